@@ -1,28 +1,32 @@
 package classes;
 
-import java.util.*;
 import java.io.IOException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class AbstractTokenizer implements Tokenizer {
 
     boolean skipSpaces;
     boolean tokenizeSpaces;
     boolean tokenizeNumbers;
+    boolean signedNumbers, decimalNumbers, exponentNumbers;
     boolean tokenizeWords;
     boolean testquotes;
     Tokenizer.WordRecognizer wordRecognizer;
-    Map keywordMap;
+    KeywordTable keywordTable;
+    SymbolTable symbolTable;
+    TokenizerConfiguration compiled;
+    Delimiters delimiters;
     String openquotes, closequotes;
     boolean trackPosition;
 
     int maximumTokenLength = 16*1024;
 
     int tokenType = BOF;
-    int tokenLine = 0;
-    int tokenColumn = 0;
     int tokenKeyword = -1;
 
-    int line=0, column=0;
+    LineIndex lineIndex;
 
     boolean eof;
 
@@ -31,32 +35,68 @@ public abstract class AbstractTokenizer implements Tokenizer {
     protected int p = 0;
     protected int numChars = 0;
     protected char[] text = null;
+    protected long textOffset = 0;
+
+    TokenChars tokenChars;
 
     protected abstract void createBuffer(int bufferSize);
     protected abstract boolean fillBuffer() throws IOException;
 
+    // Returns to the state before the first token, keeping the configuration and the character
+    // classes compiled from it. Subclasses call this when they are given new input.
+    protected void reset() {
+        text = null;
+        p = tokenStart = tokenEnd = numChars = 0;
+        textOffset = 0;
+        tokenType = BOF;
+        tokenKeyword = -1;
+        lineIndex = null;
+        eof = false;
+    }
+
+    // Continues from p in a buffer that a subclass filled without fillBuffer(), where tokenStart
+    // is at the given line and column.
+    protected void resume(int line, int column) {
+        eof = false;
+        lineIndex = trackPosition ? new LineIndex(textOffset + tokenStart, line, column) : null;
+    }
+
     public Tokenizer skipSpaces(boolean skip) {
         skipSpaces = skip;
+        compiled = null;
         return this;
     }
 
     public Tokenizer tokenizeSpaces(boolean tokenize) {
         tokenizeSpaces = tokenize;
+        compiled = null;
         return this;
     }
 
     public Tokenizer tokenizeNumbers(boolean tokenize) {
         tokenizeNumbers = tokenize;
+        compiled = null;
+        return this;
+    }
+
+    public Tokenizer tokenizeNumbers(boolean signed, boolean decimal, boolean exponent) {
+        tokenizeNumbers = true;
+        signedNumbers = signed;
+        decimalNumbers = decimal;
+        exponentNumbers = exponent;
+        compiled = null;
         return this;
     }
 
     public Tokenizer tokenizeWords(boolean tokenize) {
         tokenizeWords = tokenize;
+        compiled = null;
         return this;
     }
 
     public Tokenizer wordRecognizer(Tokenizer.WordRecognizer wordRecognizer) {
         this.wordRecognizer = wordRecognizer;
+        compiled = null;
         return this;
     }
 
@@ -68,22 +108,69 @@ public abstract class AbstractTokenizer implements Tokenizer {
         this.openquotes = openquotes;
         this.closequotes = closequotes;
         this.testquotes = openquotes.length() > 0;
+        compiled = null;
         return this;
     }
 
     public Tokenizer trackPosition(boolean track) {
         if (text != null) throw new IllegalStateException();
         trackPosition = track;
+        compiled = null;
         return this;
     }
 
     public Tokenizer keywords(String[] keywords) {
-        if (keywords != null) {
-            keywordMap = new HashMap(keywords.length);
-            for (int i = 0; i < keywords.length; i ++)
-                keywordMap.put(keywords[i], new Integer(i));
-        }
-        else keywordMap = null;
+        if (keywords != null) keywordTable = new KeywordTable(keywords);
+        else keywordTable = null;
+        compiled = null;
+        return this;
+    }
+
+    public Tokenizer symbols(SymbolTable symbols) {
+        symbolTable = symbols;
+        return this;
+    }
+
+    public Tokenizer copyConfiguration(AbstractTokenizer that) {
+        configure(that.compile());
+        symbolTable = that.symbolTable;
+        return this;
+    }
+
+    /**
+     * Compiles this tokenizer's configuration, apart from its symbol table and maximum token length,
+     * into an immutable form that other tokenizers can share with {@link #configure}. The result is
+     * cached until the configuration next changes.
+     * @return the compiled configuration.
+     */
+    public TokenizerConfiguration compile() {
+        if (compiled == null) compiled = new TokenizerConfiguration(this);
+        return compiled;
+    }
+
+    /**
+     * Configures this tokenizer as <tt>configuration</tt> specifies, sharing its tables rather than
+     * building new ones.
+     * @param configuration a configuration returned by {@link #compile}.
+     * @return this Tokenizer object for method chaining.
+     * @throws java.lang.IllegalStateException if tokenizing has begun and the configuration
+     *      tracks positions where this tokenizer does not, or the reverse.
+     */
+    public Tokenizer configure(TokenizerConfiguration configuration) {
+        if (configuration.trackPosition != trackPosition) trackPosition(configuration.trackPosition);
+        skipSpaces = configuration.skipSpaces;
+        tokenizeSpaces = configuration.tokenizeSpaces;
+        tokenizeNumbers = configuration.tokenizeNumbers;
+        signedNumbers = configuration.signedNumbers;
+        decimalNumbers = configuration.decimalNumbers;
+        exponentNumbers = configuration.exponentNumbers;
+        tokenizeWords = configuration.tokenizeWords;
+        wordRecognizer = configuration.wordRecognizer;
+        keywordTable = configuration.keywordTable;
+        openquotes = configuration.openquotes;
+        closequotes = configuration.closequotes;
+        testquotes = configuration.testquotes;
+        compiled = configuration;
         return this;
     }
 
@@ -101,15 +188,36 @@ public abstract class AbstractTokenizer implements Tokenizer {
         return new String(text, tokenStart, tokenEnd - tokenStart);
     }
 
+    public CharSequence tokenChars() {
+        if (text == null || tokenStart >= numChars) return null;
+        if (tokenChars == null) tokenChars = new TokenChars();
+        return tokenChars;
+    }
+
+    public int tokenInto(char[] dst, int offset) {
+        if (text == null || tokenStart >= numChars) return 0;
+        System.arraycopy(text, tokenStart, dst, offset, tokenEnd - tokenStart);
+        return tokenEnd - tokenStart;
+    }
+
+    public long tokenOffset() {
+        if (text == null || tokenStart >= numChars) return -1;
+        return textOffset + tokenStart;
+    }
+
+    public int tokenLength() {
+        if (text == null || tokenStart >= numChars) return 0;
+        return tokenEnd - tokenStart;
+    }
+
     public int tokenLine() {
-        if (trackPosition && tokenStart < numChars) return tokenLine;
+        if (trackPosition && tokenStart < numChars) return lineAt(tokenStart);
         else return 0;
     }
 
     public int tokenColumn() {
-        if (trackPosition && tokenStart < numChars) return tokenColumn;
+        if (trackPosition && tokenStart < numChars) return columnAt(tokenStart);
         else return 0;
-
     }
 
     public int tokenKeyword() {
@@ -117,80 +225,131 @@ public abstract class AbstractTokenizer implements Tokenizer {
         else return -1;
     }
 
-    public int next() throws IOException {
-        int quoteindex;
-        beginNewToken();
-        if (eof) return tokenType = EOF;
+    public long tokenLongValue() {
+        if (tokenType() != NUMBER) throw new IllegalStateException("not a NUMBER token");
+        return NumberParser.parseLong(text, tokenStart, tokenEnd);
+    }
 
-        char c = text[p];
+    public double tokenDoubleValue() {
+        if (tokenType() != NUMBER) throw new IllegalStateException("not a NUMBER token");
+        return NumberParser.parseDouble(text, tokenStart, tokenEnd);
+    }
 
-        if ((skipSpaces || tokenizeSpaces) && Character.isWhitespace(c)) {
-            tokenType = SPACE;
-            do {
-                if (trackPosition) updatePosition(text[p]);
-                p ++;
-                if (p >= numChars) eof = !fillBuffer();
-            } while (!eof && Character.isWhitespace(text[p]));
+    public int tokenSymbol() {
+        if (symbolTable == null) throw new IllegalStateException("no symbol table");
+        int type = tokenType();
+        if (type != WORD && type != KEYWORD) return -1;
+        return symbolTable.intern(text, tokenStart, tokenEnd);
+    }
 
-            tokenEnd = p;
+    // Runs the loop of next() directly, with the configuration looked up once per batch rather
+    // than once per token. A subclass that overrides next() must override this too.
+    public int nextBatch(int[] types, int[] starts, int[] ends, int max) throws IOException {
+        if (max < 0 || max > types.length || max > starts.length || max > ends.length)
+            throw new IndexOutOfBoundsException(String.valueOf(max));
+        TokenizerConfiguration compiled = compile();
+        byte[] actions = compiled.actions;
+        int n = 0;
+        while (n < max) {
+            int type = read(compiled, actions);
+            if (type == EOF) break;
+            long offset = textOffset + tokenStart;
+            types[n] = type;
+            starts[n] = (int) offset;
+            ends[n] = (int) (offset + tokenEnd - tokenStart);
+            n ++;
         }
-        else if (tokenizeNumbers && Character.isDigit(c)){
-            tokenType = NUMBER;
-            do {
-                if (trackPosition) column ++;
-                p ++;
-                if (p >= numChars) eof = !fillBuffer();
-            } while (!eof && Character.isDigit(text[p]));
+        return n;
+    }
 
-            tokenEnd = p;
+    public int nextSymbols(int[] symbols, int offset, int length) throws IOException {
+        if (symbolTable == null) throw new IllegalStateException("no symbol table");
+        if (offset < 0 || length < 0 || length > symbols.length - offset)
+            throw new IndexOutOfBoundsException(offset + ", " + length);
+        int n = 0;
+        while (n < length) {
+            int type = next();
+            if (type == WORD || type == KEYWORD) symbols[offset + n ++] = symbolTable.intern(text, tokenStart, tokenEnd);
+            else if (type == EOF) break;
         }
-        else if (tokenizeWords &&
-                    (wordRecognizer != null
-                        ?wordRecognizer.isWordStart(c)
-                        :Character.isJavaIdentifierStart(c))) {
-            tokenType = WORD;
-            do {
-                if (trackPosition) column ++;
-                p ++;
-                if (p > numChars) eof = !fillBuffer();
-            } while (!eof &&
-                        (wordRecognizer != null
-                            ?wordRecognizer.isWordPart(text[p], c)
-                            :Character.isJavaIdentifierPart(text[p])));
-
-            if (keywordMap != null) {
-                String ident = new String(text, tokenStart, p - tokenStart);
-                Integer index = (Integer) keywordMap.get(ident);
-                if (index != null) {
-                    tokenType = KEYWORD;
-                    tokenKeyword = index.intValue();
+        return n;
+    }
+
+    public Stream<Token> tokens() {
+        return StreamSupport.stream(new TokenSpliterator.Tokens(this), false);
+    }
+
+    public IntStream tokenTypes() {
+        return StreamSupport.intStream(new TokenSpliterator.Types(this), false);
+    }
+
+    public int next() throws IOException {
+        TokenizerConfiguration compiled = compile();
+        return read(compiled, compiled.actions);
+    }
+
+    private int read(TokenizerConfiguration compiled, byte[] actions) throws IOException {
+        for (;;) {
+            if (p < numChars) tokenStart = tokenEnd = p;
+            else {
+                beginNewToken();
+                if (eof) return tokenType = EOF;
+            }
+
+            char c = text[p];
+            int action = c < 256 ? actions[c] : compiled.action(c);
+            if (action == TokenizerConfiguration.SIGN && !startsNumber(c)) action = compiled.actionAfterSign(c);
+
+            switch (action) {
+            case TokenizerConfiguration.SKIP:
+                consume(CharClassTable.SPACE, c);
+                continue;
+            case TokenizerConfiguration.SPACE:
+                tokenType = SPACE;
+                consume(CharClassTable.SPACE, c);
+                break;
+            case TokenizerConfiguration.DIGIT:
+                tokenType = NUMBER;
+                consume(CharClassTable.DIGIT, c);
+                if (decimalNumbers || exponentNumbers) consumeFraction();
+                break;
+            case TokenizerConfiguration.SIGN:
+                tokenType = NUMBER;
+                if (c != '.') p ++;
+                if (text[p] != '.') consume(CharClassTable.DIGIT, text[p]);
+                consumeFraction();
+                break;
+            case TokenizerConfiguration.WORD:
+                tokenType = WORD;
+                consume(CharClassTable.WORD_PART, c);
+                if (keywordTable != null) {
+                    int index = keywordTable.lookup(text, tokenStart, tokenEnd);
+                    if (index != -1) {
+                        tokenType = KEYWORD;
+                        tokenKeyword = index;
+                    }
                 }
+                break;
+            case TokenizerConfiguration.QUOTE:
+                p ++;
+                scan(compiled.closequote(c),  false, false, true);
+                tokenType = c;
+                break;
+            default:
+                tokenType = c;
+                p ++;
                 tokenEnd = p;
             }
+            assert text != null && 0 <= tokenStart && tokenStart <= tokenEnd &&
+                    tokenEnd <= p && p <= numChars && numChars <= text.length;
+            return tokenType;
         }
-        else if (testquotes && (quoteindex = openquotes.indexOf(c)) != -1) {
-            if (trackPosition) column ++;
-            p ++;
-            char closequote = closequotes.charAt(quoteindex);
-            scan(closequote,  false, false, true);
-            tokenType = c;
-        }
-        else {
-            if (trackPosition) updatePosition(text[p]);
-            tokenType = text[p];
-            p ++;
-            tokenEnd = p;
-        }
-        assert text != null && 0 <= tokenStart && tokenStart <= tokenEnd &&
-                tokenEnd <= p && p <= numChars && numChars <= text.length;
-        return tokenType;
     }
 
     public int nextChar() throws IOException {
         beginNewToken();
         if (eof) return tokenType = EOF;
         tokenType = text[p];
-        if (trackPosition) updatePosition(text[p]);
         tokenEnd = ++p;
 
         assert text != null && 0 <= tokenStart && tokenStart <= tokenEnd &&
@@ -201,73 +360,74 @@ public abstract class AbstractTokenizer implements Tokenizer {
     public int scan(char delimiter, boolean extendCurrentToken, boolean includeDelimiter, boolean skipDelimiter)
         throws IOException
     {
-        return scan(new char[] { delimiter }, false, extendCurrentToken, includeDelimiter, skipDelimiter);
+        return scan(delimiter, null, extendCurrentToken, includeDelimiter, skipDelimiter);
     }
 
     public int scan(String delimiter, boolean matchall, boolean extendCurrentToken, boolean includeDelimiter,
                     boolean skipDelimiter) throws IOException
     {
-        return scan(delimiter.toCharArray(), matchall, extendCurrentToken, includeDelimiter, skipDelimiter);
+        checkDelimiter(delimiter.length(), matchall, includeDelimiter, skipDelimiter);
+        if (delimiter.length() == 1)
+            return scan(delimiter.charAt(0), null, extendCurrentToken, includeDelimiter, skipDelimiter);
+
+        if (delimiters == null || !delimiters.matches(delimiter, matchall))
+            delimiters = new Delimiters(delimiter, matchall);
+        return scan('\0', delimiters, extendCurrentToken, includeDelimiter, skipDelimiter);
     }
 
     protected int scan(char[] delimiter, boolean matchAll, boolean extendCurrentToken, boolean includeDelimiter,
                        boolean skipDelimiter) throws IOException
     {
-        if (matchAll & !includeDelimiter && !skipDelimiter)
+        checkDelimiter(delimiter.length, matchAll, includeDelimiter, skipDelimiter);
+        if (delimiter.length == 1)
+            return scan(delimiter[0], null, extendCurrentToken, includeDelimiter, skipDelimiter);
+
+        if (delimiters == null || !delimiters.matches(delimiter, matchAll))
+            delimiters = new Delimiters(new String(delimiter), matchAll);
+        return scan('\0', delimiters, extendCurrentToken, includeDelimiter, skipDelimiter);
+    }
+
+    private static void checkDelimiter(int length, boolean matchAll, boolean includeDelimiter, boolean skipDelimiter) {
+        if (length == 0) throw new IllegalArgumentException("empty delimiter");
+        if (matchAll && !includeDelimiter && !skipDelimiter)
             throw new IllegalArgumentException("must include or skip delimiter when matchAll is true");
+    }
 
+    private int scan(char delimiter, Delimiters delimiters, boolean extendCurrentToken, boolean includeDelimiter,
+                     boolean skipDelimiter) throws IOException
+    {
         if (extendCurrentToken) ensureChars();
         else beginNewToken();
 
         tokenType = TEXT;
         if (eof) return EOF;
 
-        int delimiterMatchIndex = 0;
-        String delimString = null;
-        if (!matchAll && delimiter.length > 0) delimString = new String(delimiter);
-
-        while(!eof) {
-            if (delimiter.length == 1) {
-                if (text[p] == delimiter[0]) break;
-            }
-            else if (matchAll) {
-                if (text[p] == delimiter[delimiterMatchIndex]) {
-                    delimiterMatchIndex ++;
-                    if (delimiterMatchIndex == delimiter.length) break;
-                }
-                else delimiterMatchIndex = 0;
-            }
-            else {
-                if (delimString.indexOf(text[p]) != -1) break;
-            }
-
-            if (trackPosition) updatePosition(text[p]);
-            p ++;
-            if (p >= numChars) {
-                if (tokenStart > 0)
-                    eof = !fillBuffer();
-                else {
-                    tokenEnd = p;
-                    return OVERFLOW;
-                }
+        int length = delimiters == null ? 1 : delimiters.length();
+        int found;
+        for (;;) {
+            found = delimiters == null
+                ? Delimiters.indexOf(text, delimiter, p, numChars)
+                : delimiters.find(text, p, numChars);
+            if (found != -1) break;
+
+            if (numChars - (length - 1) > p) p = numChars - (length - 1);
+            int available = numChars - p;
+            eof = !fill();
+            if (eof || numChars - p == available) {
+                p = numChars;
+                tokenEnd = p;
+                return eof ? EOF : OVERFLOW;
             }
         }
 
-        if (eof) {
-            tokenEnd = p;
-            return EOF;
-        }
-
+        p = found;
         if (includeDelimiter) {
-            if (trackPosition) updatePosition(text[p]);
-            p ++;
+            p = found + length;
             tokenEnd = p;
         }
         else if (skipDelimiter) {
-            if (trackPosition) updatePosition(text[p]);
-            p ++;
-            if (matchAll) tokenEnd = p - delimiter.length;
-            else tokenEnd = p - 1;
+            p = found + length;
+            tokenEnd = found;
         }
         else tokenEnd = p;
 
@@ -280,31 +440,133 @@ public abstract class AbstractTokenizer implements Tokenizer {
     private void ensureChars() throws IOException {
         if (text == null) {
             createBuffer(maximumTokenLength);
-            p = tokenStart = tokenEnd = 0;
-            if (trackPosition) line = column = 1;
+            if (trackPosition) lineIndex = new LineIndex(textOffset + p, 1, 1);
         }
         if (!eof && p >= numChars)
-            eof = !fillBuffer();
+            eof = !fill();
 
         assert text != null && 0 <= tokenStart && tokenStart <= tokenEnd &&
                 tokenEnd <= p && (p < numChars || (p == numChars && eof)) &&
                 numChars <= text.length;
     }
 
+    // Reads more input for readers such as CsvReader that parse the buffer themselves, keeping
+    // the characters from tokenStart on. Returns false if no more characters could be read,
+    // which is at the end of input unless the buffer is full.
+    boolean readMore() throws IOException {
+        if (text == null) {
+            ensureChars();
+            return !eof;
+        }
+        if (eof) return false;
+        int available = numChars - p;
+        eof = !fill();
+        return numChars - p > available;
+    }
+
     private void beginNewToken() throws IOException {
+        if (text != null) tokenStart = tokenEnd = p;
         ensureChars();
-        if (!eof) {
-            tokenStart = p;
-            tokenColumn = column;
-            tokenLine = line;
+        if (!eof) tokenStart = tokenEnd = p;
+    }
+
+    private void consume(int charClass, char firstChar) throws IOException {
+        byte[] table = compiled.charClasses.table(charClass, firstChar);
+        p ++;
+        for (;;) {
+            if (p >= numChars) {
+                if (!eof) eof = !fill();
+                if (eof || p >= numChars) break;
+            }
+            char[] text = this.text;
+            int end = p, n = numChars;
+            if (table != null) {
+                char c;
+                while (end < n && (c = text[end]) < 256 && (table[c] & charClass) != 0) end ++;
+            }
+            if (end < n && (table == null || text[end] >= 256))
+                end = compiled.charClasses.span(text, end, n, charClass, firstChar);
+            p = end;
+            if (p < n) break;
         }
+        tokenEnd = p;
+    }
+
+    private boolean startsNumber(char c) throws IOException {
+        if (c == '.') return decimalNumbers && isDigit(peek(1));
+        if (!signedNumbers) return false;
+        int next = peek(1);
+        return isDigit(next) || (next == '.' && decimalNumbers && isDigit(peek(2)));
+    }
+
+    // Consumes the optional fractional part and exponent that follow the digits at p.
+    private void consumeFraction() throws IOException {
+        if (decimalNumbers && peek(0) == '.' && isDigit(peek(1))) {
+            p ++;
+            consume(CharClassTable.DIGIT, text[p]);
+        }
+        int c = peek(0);
+        if (exponentNumbers && (c == 'e' || c == 'E')) {
+            int sign = peek(1), digits = sign == '-' || sign == '+' ? 2 : 1;
+            if (isDigit(peek(digits))) {
+                p += digits;
+                consume(CharClassTable.DIGIT, text[p]);
+            }
+        }
+        tokenEnd = p;
+    }
+
+    private boolean isDigit(int c) {
+        return c != -1 && (compiled.charClasses.classify((char) c) & CharClassTable.DIGIT) != 0;
     }
 
-    private void updatePosition(char c) {
-        if (c == '\n') {
-            line ++;
-            column = 1;
+    // Returns the character the specified distance past p, filling the buffer if necessary,
+    // or -1 if the input or the buffer ends first.
+    private int peek(int distance) throws IOException {
+        while (p + distance >= numChars) {
+            int available = numChars - p;
+            if (eof) return -1;
+            eof = !fill();
+            if (eof || numChars - p == available) return -1;
+        }
+        return text[p + distance];
+    }
+
+    // Indexes the newlines that fillBuffer() may be about to discard.
+    private boolean fill() throws IOException {
+        if (trackPosition) lineIndex.scan(text, textOffset, tokenStart);
+        boolean filled = fillBuffer();
+        if (trackPosition) lineIndex.discard(textOffset);
+        return filled;
+    }
+
+    int lineAt(int index) {
+        lineIndex.locate(text, textOffset, index, numChars);
+        return lineIndex.line;
+    }
+
+    int columnAt(int index) {
+        lineIndex.locate(text, textOffset, index, numChars);
+        return lineIndex.column;
+    }
+
+    class TokenChars implements CharSequence {
+        public int length() { return tokenEnd - tokenStart; }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= tokenEnd - tokenStart)
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            return text[tokenStart + index];
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || start > end || end > tokenEnd - tokenStart)
+                throw new IndexOutOfBoundsException(start + "," + end);
+            return new String(text, tokenStart + start, end - start);
+        }
+
+        public String toString() {
+            return new String(text, tokenStart, tokenEnd - tokenStart);
         }
-        else column ++;
     }
 }
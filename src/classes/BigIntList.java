@@ -0,0 +1,103 @@
+package classes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A list of ints with long indexes, kept off the Java heap in direct buffers of CHUNK_SIZE
+ * ints each. Growing the list allocates another chunk and never copies the existing ones.
+ * The memory of a chunk is released when its buffer is garbage collected, which
+ * clear() allows for all of them. The JVM limits direct buffers to -XX:MaxDirectMemorySize,
+ * which by default is the maximum heap size, so a list larger than the heap needs that flag
+ * raised, as in <tt>java -Xmx1g -XX:MaxDirectMemorySize=16g</tt>; otherwise add() throws
+ * OutOfMemoryError when the limit is reached.
+ */
+public class BigIntList {
+
+    static final int CHUNK_BITS = 20;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    IntBuffer[] chunks = new IntBuffer[8];
+    int numChunks;
+    long size;
+
+    public long size() { return size; }
+
+    public int get(long index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+        return chunks[(int) (index >>> CHUNK_BITS)].get((int) index & CHUNK_MASK);
+    }
+
+    public void set(long index, int value) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+        chunks[(int) (index >>> CHUNK_BITS)].put((int) index & CHUNK_MASK, value);
+    }
+
+    public void add(int value) {
+        if (size == (long) numChunks << CHUNK_BITS) addChunk();
+        chunks[(int) (size >>> CHUNK_BITS)].put((int) size & CHUNK_MASK, value);
+        size ++;
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        if (offset < 0 || length < 0 || length > values.length - offset)
+            throw new IndexOutOfBoundsException(offset + ", " + length);
+        while (length > 0) {
+            if (size == (long) numChunks << CHUNK_BITS) addChunk();
+            int position = (int) size & CHUNK_MASK;
+            int n = Math.min(length, CHUNK_SIZE - position);
+            chunks[(int) (size >>> CHUNK_BITS)].put(position, values, offset, n);
+            size += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void addAll(IntList list) { addAll(list.data, 0, list.size); }
+
+    // Copies length elements starting at index into dst.
+    public void get(long index, int[] dst, int offset, int length) {
+        if (index < 0 || length < 0 || index > size - length)
+            throw new IndexOutOfBoundsException(index + ", " + length);
+        if (offset < 0 || length > dst.length - offset)
+            throw new IndexOutOfBoundsException(offset + ", " + length);
+        while (length > 0) {
+            int position = (int) index & CHUNK_MASK;
+            int n = Math.min(length, CHUNK_SIZE - position);
+            chunks[(int) (index >>> CHUNK_BITS)].get(position, dst, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public int[] toArray(long index, int length) {
+        if (index < 0 || length < 0 || index > size - length)
+            throw new IndexOutOfBoundsException(index + ", " + length);
+        int[] copy = new int[length];
+        get(index, copy, 0, length);
+        return copy;
+    }
+
+    public int[] toArray() {
+        if (size > Integer.MAX_VALUE - 8) throw new IllegalStateException("too large for an array: " + size);
+        return toArray(0, (int) size);
+    }
+
+    public void clear() {
+        for (int i = 0; i < numChunks; i ++) chunks[i] = null;
+        numChunks = 0;
+        size = 0;
+    }
+
+    private void addChunk() {
+        if (numChunks == chunks.length) {
+            IntBuffer[] newchunks = new IntBuffer[chunks.length * 2];
+            System.arraycopy(chunks, 0, newchunks, 0, numChunks);
+            chunks = newchunks;
+        }
+        chunks[numChunks ++] = ByteBuffer.allocateDirect(CHUNK_SIZE * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+}
@@ -0,0 +1,84 @@
+package classes;
+
+class CharClassTable {
+
+    static final int SPACE = 1;
+    static final int DIGIT = 2;
+    static final int WORD_START = 4;
+    static final int WORD_PART = 8;
+    static final int QUOTE = 16;
+
+    Tokenizer.WordRecognizer wordRecognizer;
+    String openquotes;
+
+    byte[] latin1 = new byte[256];
+    byte[][] wordParts;
+
+    CharClassTable(Tokenizer.WordRecognizer wordRecognizer, String openquotes) {
+        this.wordRecognizer = wordRecognizer;
+        this.openquotes = openquotes != null ? openquotes : "";
+        for (char c = 0; c < 256; c ++) latin1[c] = (byte) compute(c);
+        if (wordRecognizer != null) wordParts = new byte[256][];
+    }
+
+    // Builds the tables that table() would otherwise build on demand, so that this table is
+    // not modified after it is shared.
+    void fillWordParts() {
+        if (wordRecognizer == null) return;
+        for (char c = 0; c < 256; c ++)
+            if ((latin1[c] & WORD_START) != 0) wordParts[c] = wordPartTable(c);
+    }
+
+    int classify(char c) {
+        return c < 256 ? latin1[c] : compute(c);
+    }
+
+    byte[] table(int charClass, char firstChar) {
+        if (charClass != WORD_PART || wordRecognizer == null) return latin1;
+        if (firstChar >= 256) return null;
+        byte[] table = wordParts[firstChar];
+        if (table == null) table = wordParts[firstChar] = wordPartTable(firstChar);
+        return table;
+    }
+
+    int span(char[] text, int from, int to, int charClass, char firstChar) {
+        byte[] table = table(charClass, firstChar);
+        while (from < to) {
+            char c = text[from];
+            if (c < 256 && table != null) {
+                if ((table[c] & charClass) == 0) break;
+            }
+            else if (!isMember(c, charClass, firstChar)) break;
+            from ++;
+        }
+        return from;
+    }
+
+    private boolean isMember(char c, int charClass, char firstChar) {
+        if (charClass == WORD_PART && wordRecognizer != null)
+            return wordRecognizer.isWordPart(c, firstChar);
+        return (compute(c) & charClass) != 0;
+    }
+
+    private byte[] wordPartTable(char firstChar) {
+        byte[] table = new byte[256];
+        for (char c = 0; c < 256; c ++)
+            if (wordRecognizer.isWordPart(c, firstChar)) table[c] = WORD_PART;
+        return table;
+    }
+
+    private int compute(char c) {
+        int charClass = 0;
+        if (Character.isWhitespace(c)) charClass |= SPACE;
+        if (Character.isDigit(c)) charClass |= DIGIT;
+        if (wordRecognizer != null) {
+            if (wordRecognizer.isWordStart(c)) charClass |= WORD_START;
+        }
+        else {
+            if (Character.isJavaIdentifierStart(c)) charClass |= WORD_START;
+            if (Character.isJavaIdentifierPart(c)) charClass |= WORD_PART;
+        }
+        if (openquotes.indexOf(c) != -1) charClass |= QUOTE;
+        return charClass;
+    }
+}
@@ -4,19 +4,69 @@ import java.io.IOException;
 
 public class CharSequenceTokenizer extends AbstractTokenizer {
 
+    CharSequence sequence;
+    int start, end;
+    int position;
     char[] buffer;
 
-    public CharSequenceTokenizer(CharSequence sequence) {
-        buffer = sequence.toString().toCharArray();
+    public CharSequenceTokenizer(CharSequence sequence) { this(sequence, 0, sequence.length()); }
+
+    CharSequenceTokenizer(CharSequence sequence, int start, int end) {
+        this.sequence = sequence;
+        this.start = start;
+        this.end = end;
+    }
+
+    public Tokenizer reset(CharSequence sequence) {
+        reset();
+        this.sequence = sequence;
+        this.start = 0;
+        this.end = sequence.length();
+        return this;
     }
 
+    // The sequence is copied into the buffer a window at a time, so short inputs only need a
+    // short buffer, and the buffer is kept when the tokenizer is reset.
     protected void createBuffer(int bufferSize) {
         assert text == null;
+        int size = Math.max(16, Math.min(bufferSize, end - start));
+        if (buffer == null || buffer.length < size) buffer = new char[size];
         text = buffer;
-        numChars = buffer.length;
+        textOffset = position = start;
+    }
+
+    // Grows the buffer rather than returning OVERFLOW, since the whole sequence is available.
+    protected boolean fillBuffer() {
+        if (position >= end) return false;
+
+        if (tokenStart > 0) {
+            System.arraycopy(text, tokenStart, text, 0, numChars - tokenStart);
+            textOffset += tokenStart;
+            tokenEnd -= tokenStart;
+            p -= tokenStart;
+            numChars -= tokenStart;
+            tokenStart = 0;
+        }
+        if (numChars == text.length) {
+            buffer = new char[text.length * 2];
+            System.arraycopy(text, 0, buffer, 0, numChars);
+            text = buffer;
+        }
+
+        int n = Math.min(text.length - numChars, end - position);
+        getChars(position, position + n, text, numChars);
+        position += n;
+        numChars += n;
+        return true;
     }
 
-    protected boolean fillBuffer() { return false; }
+    private void getChars(int from, int to, char[] dst, int offset) {
+        CharSequence s = sequence;
+        if (s instanceof String) ((String) s).getChars(from, to, dst, offset);
+        else if (s instanceof StringBuilder) ((StringBuilder) s).getChars(from, to, dst, offset);
+        else if (s instanceof StringBuffer) ((StringBuffer) s).getChars(from, to, dst, offset);
+        else for (int i = from; i < to; i ++) dst[offset ++] = s.charAt(i);
+    }
 
     public static class Test {
         public static void main(String[] args) throws IOException {
@@ -0,0 +1,258 @@
+package classes;
+
+import java.util.Random;
+
+/**
+ * A list of ints stored in compressed blocks of BLOCK_SIZE values, for mostly sorted data such
+ * as IDs and posting lists. A block whose values never decrease stores its first value and the
+ * differences between neighbours; any other block stores its minimum and each value's offset
+ * from it. Either way the stored numbers are bit-packed at the width of the largest. The
+ * first value of every block is kept in a skip index, so binarySearch() finds the block with a
+ * binary search of the index and then decodes only that block. Values are appended to an
+ * uncompressed tail, which is compressed when it fills.
+ */
+public class CompressedIntList {
+
+    static final int BLOCK_BITS = 7;
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    // Set in a block's width when it stores offsets from its minimum rather than differences.
+    static final int OFFSETS = 0x80;
+
+    long[][] blocks = new long[16][];
+    int[] firsts = new int[16];
+    int[] bases = new int[16];
+    byte[] widths = new byte[16];
+    int numBlocks;
+    int[] tail = new int[BLOCK_SIZE];
+    int size;
+
+    public CompressedIntList() { }
+
+    public CompressedIntList(IntList list) { addAll(list.data, 0, list.size); }
+
+    public int size() { return size; }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+        int block = index >>> BLOCK_BITS, i = index & BLOCK_MASK;
+        if (block == numBlocks) return tail[i];
+        long[] words = blocks[block];
+        int width = widths[block] & 0xFF;
+        if ((width & OFFSETS) != 0) {
+            width &= ~OFFSETS;
+            return bases[block] + (width == 0 ? 0 : unpack(words, (long) i * width, width));
+        }
+        int value = bases[block];
+        if (width == 0) return value;
+        long bit = 0;
+        for (int k = 0; k < i; k ++, bit += width) value += unpack(words, bit, width);
+        return value;
+    }
+
+    public void set(int index, int value) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+        int block = index >>> BLOCK_BITS;
+        if (block == numBlocks) {
+            tail[index & BLOCK_MASK] = value;
+            return;
+        }
+        int[] values = new int[BLOCK_SIZE];
+        decode(block, values, 0);
+        values[index & BLOCK_MASK] = value;
+        encode(block, values);
+    }
+
+    public void add(int value) {
+        tail[size & BLOCK_MASK] = value;
+        size ++;
+        if ((size & BLOCK_MASK) == 0) {
+            if (numBlocks == blocks.length) growIndex();
+            encode(numBlocks ++, tail);
+        }
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        if (offset < 0 || length < 0 || length > values.length - offset)
+            throw new IndexOutOfBoundsException(offset + ", " + length);
+        for (int i = 0; i < length; i ++) add(values[offset + i]);
+    }
+
+    public int[] toArray() {
+        int[] copy = new int[size];
+        for (int block = 0; block < numBlocks; block ++) decode(block, copy, block << BLOCK_BITS);
+        System.arraycopy(tail, 0, copy, numBlocks << BLOCK_BITS, size & BLOCK_MASK);
+        return copy;
+    }
+
+    // As Arrays.binarySearch() does for a sorted list: returns the index of key, or
+    // -(insertion point) - 1 if the list does not contain it.
+    public int binarySearch(int key) {
+        int low = 0, high = numBlocks - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firsts[mid] <= key) low = mid + 1;
+            else high = mid - 1;
+        }
+        if (high == -1) return numBlocks > 0 ? -1 : search(numBlocks, key);
+        int index = search(high, key);
+        if (high < numBlocks - 1 || index != -(numBlocks << BLOCK_BITS) - 1) return index;
+        return search(numBlocks, key);
+    }
+
+    // Searches one block, or the tail if block is numBlocks, decoding values in order.
+    private int search(int block, int key) {
+        int start = block << BLOCK_BITS;
+        int count = block == numBlocks ? size & BLOCK_MASK : BLOCK_SIZE;
+        if (block == numBlocks || (widths[block] & OFFSETS) != 0) {
+            for (int i = 0; i < count; i ++) {
+                int value = block == numBlocks ? tail[i] : get(start + i);
+                if (value == key) return start + i;
+                if (value > key) return -(start + i) - 1;
+            }
+            return -(start + count) - 1;
+        }
+        long[] words = blocks[block];
+        int width = widths[block] & 0xFF;
+        int value = bases[block];
+        long bit = 0;
+        for (int i = 0; i < count; i ++) {
+            if (i > 0 && width != 0) {
+                value += unpack(words, bit, width);
+                bit += width;
+            }
+            if (value == key) return start + i;
+            if (value > key) return -(start + i) - 1;
+        }
+        return -(start + count) - 1;
+    }
+
+    /** Returns the approximate number of bytes used to store the values. */
+    public long sizeInBytes() {
+        long bytes = numBlocks * (4L + 4 + 1) + 4L * BLOCK_SIZE;
+        for (int block = 0; block < numBlocks; block ++) bytes += 16 + 8L * blocks[block].length;
+        return bytes;
+    }
+
+    private void decode(int block, int[] dst, int offset) {
+        long[] words = blocks[block];
+        int width = widths[block] & 0xFF;
+        if ((width & OFFSETS) != 0) {
+            width &= ~OFFSETS;
+            long bit = 0;
+            for (int i = 0; i < BLOCK_SIZE; i ++, bit += width)
+                dst[offset + i] = bases[block] + (width == 0 ? 0 : unpack(words, bit, width));
+        }
+        else {
+            int value = bases[block];
+            dst[offset] = value;
+            long bit = 0;
+            for (int i = 1; i < BLOCK_SIZE; i ++, bit += width) {
+                if (width != 0) value += unpack(words, bit, width);
+                dst[offset + i] = value;
+            }
+        }
+    }
+
+    private void encode(int block, int[] values) {
+        boolean ascending = true;
+        long min = values[0], max = values[0], maxDelta = 0;
+        for (int i = 1; i < BLOCK_SIZE; i ++) {
+            long delta = (long) values[i] - values[i - 1];
+            if (delta < 0) ascending = false;
+            else maxDelta = Math.max(maxDelta, delta);
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+
+        int width;
+        long[] words;
+        if (ascending) {
+            width = 64 - Long.numberOfLeadingZeros(maxDelta);
+            words = new long[((BLOCK_SIZE - 1) * width + 63) >>> 6];
+            long bit = 0;
+            for (int i = 1; i < BLOCK_SIZE; i ++, bit += width)
+                pack(words, bit, width, (long) values[i] - values[i - 1]);
+            bases[block] = values[0];
+            widths[block] = (byte) width;
+        }
+        else {
+            width = 64 - Long.numberOfLeadingZeros(max - min);
+            words = new long[(BLOCK_SIZE * width + 63) >>> 6];
+            long bit = 0;
+            for (int i = 0; i < BLOCK_SIZE; i ++, bit += width)
+                pack(words, bit, width, values[i] - min);
+            bases[block] = (int) min;
+            widths[block] = (byte) (width | OFFSETS);
+        }
+        blocks[block] = words;
+        firsts[block] = values[0];
+    }
+
+    private static int unpack(long[] words, long bit, int width) {
+        int word = (int) (bit >>> 6), shift = (int) bit & 63;
+        long value = words[word] >>> shift;
+        if (shift + width > 64) value |= words[word + 1] << (64 - shift);
+        return (int) (value & ((1L << width) - 1));
+    }
+
+    private static void pack(long[] words, long bit, int width, long value) {
+        if (width == 0) return;
+        int word = (int) (bit >>> 6), shift = (int) bit & 63;
+        words[word] |= value << shift;
+        if (shift + width > 64) words[word + 1] |= value >>> (64 - shift);
+    }
+
+    private void growIndex() {
+        int n = blocks.length * 2;
+        long[][] newblocks = new long[n][];
+        System.arraycopy(blocks, 0, newblocks, 0, numBlocks);
+        blocks = newblocks;
+        int[] newfirsts = new int[n];
+        System.arraycopy(firsts, 0, newfirsts, 0, numBlocks);
+        firsts = newfirsts;
+        int[] newbases = new int[n];
+        System.arraycopy(bases, 0, newbases, 0, numBlocks);
+        bases = newbases;
+        byte[] newwidths = new byte[n];
+        System.arraycopy(widths, 0, newwidths, 0, numBlocks);
+        widths = newwidths;
+    }
+
+    // Compares the size and speed of a posting list of sorted random IDs as an IntList and as
+    // a CompressedIntList.
+    public static class Benchmark {
+        public static void main(String[] args) {
+            int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+            int gap = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+            Random random = new Random(42);
+            IntList list = new IntList(n);
+            int id = 0;
+            for (int i = 0; i < n; i ++) list.add(id += 1 + random.nextInt(2 * gap - 1));
+
+            CompressedIntList compressed = new CompressedIntList(list);
+            System.out.println(n + " IDs with an average gap of " + gap + ": " + 4L * n / 1024 + "KB as ints, " +
+                               compressed.sizeInBytes() / 1024 + "KB compressed");
+
+            int[] keys = new int[1000000];
+            for (int i = 0; i < keys.length; i ++) keys[i] = random.nextInt(id);
+            for (int round = 0; round < 3; round ++) {
+                long found = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < keys.length; i ++) if (list.binarySearch(keys[i]) >= 0) found ++;
+                long listTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < keys.length; i ++) if (compressed.binarySearch(keys[i]) >= 0) found --;
+                long compressedTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                long sum = 0;
+                for (int i = 0; i < keys.length; i ++) sum += compressed.get(keys[i] % n);
+                long getTime = System.nanoTime() - start;
+                System.out.println("binarySearch: " + listTime / keys.length + "ns as ints, " +
+                                   compressedTime / keys.length + "ns compressed; get: " +
+                                   getTime / keys.length + "ns compressed" + (found == 0 ? "" : " MISMATCH") +
+                                   (sum == 0 ? " " : ""));
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package classes;
+
+import java.io.IOException;
+
+/**
+ * Reads comma- or tab-separated values, quoted as RFC 4180 describes, from the input of an
+ * AbstractTokenizer. Only the tokenizer's buffer is used; its configuration is ignored.
+ * Each field is parsed where it lies in the buffer, and a quoted field has its doubled quotes
+ * removed in place, so no field is copied until it is stored. {@link #readColumns} stores the
+ * fields of each record straight into columns of ints, longs, doubles or characters.
+ * A field must fit in the tokenizer's buffer, unless the tokenizer grows its buffer as
+ * CharSequenceTokenizer does. A quote that is never closed extends its field to the end of
+ * input, and characters after a closing quote are kept as part of the field.
+ * @see io.ParallelCsvReader
+ */
+public class CsvReader {
+
+    AbstractTokenizer in;
+    char separator;
+    // The largest character that can end an unquoted field.
+    char lastStop;
+    boolean fieldsRemain;
+
+    public CsvReader(AbstractTokenizer in) { this(in, ','); }
+    public CsvReader(AbstractTokenizer in, char separator) {
+        if (separator == '"' || separator == '\n' || separator == '\r') throw new IllegalArgumentException();
+        this.in = in;
+        this.separator = separator;
+        this.lastStop = (char) Math.max(separator, '\r');
+    }
+
+    /** Skips any fields left in the current record, and returns false if there are no more records. */
+    public boolean nextRecord() throws IOException {
+        while (fieldsRemain) nextField();
+        if (peek(0) == -1) return false;
+        fieldsRemain = true;
+        return true;
+    }
+
+    /** Reads the next field of the current record, and returns false if there are no more. */
+    public boolean nextField() throws IOException {
+        if (!fieldsRemain) return false;
+        AbstractTokenizer t = in;
+        t.tokenStart = t.tokenEnd = t.p;
+        if (peek(0) == '"') {
+            t.p ++;
+            t.tokenStart = t.tokenEnd = t.p;
+            quoted();
+        }
+        unquoted();
+
+        int c = peek(0);
+        if (c == separator) t.p ++;
+        else {
+            fieldsRemain = false;
+            if (c != -1) t.p ++;
+            if (c == '\r' && peek(0) == '\n') t.p ++;
+        }
+        return true;
+    }
+
+    public int fieldLength() { return in.tokenEnd - in.tokenStart; }
+
+    public String fieldText() { return new String(in.text, in.tokenStart, in.tokenEnd - in.tokenStart); }
+
+    public int fieldInto(char[] dst, int offset) {
+        System.arraycopy(in.text, in.tokenStart, dst, offset, in.tokenEnd - in.tokenStart);
+        return in.tokenEnd - in.tokenStart;
+    }
+
+    public int fieldInt() { return parseInt(in.text, in.tokenStart, in.tokenEnd); }
+
+    public long fieldLong() { return NumberParser.parseLong(in.text, in.tokenStart, in.tokenEnd); }
+
+    public double fieldDouble() { return NumberParser.parseDouble(in.text, in.tokenStart, in.tokenEnd); }
+
+    /**
+     * Reads the remaining records, storing field i of each in columns[i]. A null column skips
+     * its field, a record with too few fields stores empty fields in the remaining columns, and
+     * fields beyond the last column are ignored.
+     * @return the number of records read.
+     * @throws java.lang.NumberFormatException if a numeric column's field is not a number.
+     */
+    public int readColumns(Column[] columns) throws IOException {
+        int records = 0;
+        while (nextRecord()) {
+            for (int i = 0; i < columns.length; i ++) {
+                boolean present = nextField();
+                if (columns[i] == null) continue;
+                if (present) columns[i].add(in.text, in.tokenStart, in.tokenEnd);
+                else columns[i].add(in.text, 0, 0);
+            }
+            records ++;
+        }
+        return records;
+    }
+
+    // Reads a quoted field up to its closing quote, removing doubled quotes, and leaves p after
+    // the closing quote.
+    private void quoted() throws IOException {
+        AbstractTokenizer t = in;
+        for (;;) {
+            char[] text = t.text;
+            int p = t.p, w = t.tokenEnd;
+            int q = Delimiters.indexOf(text, '"', p, t.numChars);
+            int end = q == -1 ? t.numChars : q;
+            if (w != p) System.arraycopy(text, p, text, w, end - p);
+            t.tokenEnd = w + end - p;
+            t.p = end;
+            if (q == -1) {
+                if (!more()) return;
+            }
+            else if (peek(1) == '"') {
+                t.text[t.tokenEnd ++] = '"';
+                t.p += 2;
+            }
+            else {
+                t.p ++;
+                return;
+            }
+        }
+    }
+
+    // Reads up to the next separator or line end, appending to the field at tokenEnd. Only a
+    // quoted field needs its characters moved; otherwise tokenEnd simply follows p.
+    private void unquoted() throws IOException {
+        AbstractTokenizer t = in;
+        char separator = this.separator, lastStop = this.lastStop;
+        for (;;) {
+            char[] text = t.text;
+            int p = t.p, w = t.tokenEnd, n = t.numChars;
+            char c;
+            if (w == p) {
+                while (p < n && ((c = text[p]) > lastStop || c != separator && c != '\n' && c != '\r')) p ++;
+                w = p;
+            }
+            else {
+                while (p < n && ((c = text[p]) > lastStop || c != separator && c != '\n' && c != '\r'))
+                    text[w ++] = text[p ++];
+            }
+            t.p = p;
+            t.tokenEnd = w;
+            if (p < n || !more()) return;
+        }
+    }
+
+    private int peek(int distance) throws IOException {
+        while (in.p + distance >= in.numChars)
+            if (!more()) return -1;
+        return in.text[in.p + distance];
+    }
+
+    private boolean more() throws IOException {
+        if (in.readMore()) return true;
+        if (!in.eof) throw new IOException("field longer than the buffer at offset " + in.tokenOffset());
+        return false;
+    }
+
+    static int parseInt(char[] text, int start, int end) {
+        long value = NumberParser.parseLong(text, start, end);
+        if (value != (int) value) throw NumberParser.error(text, start, end);
+        return (int) value;
+    }
+
+    /**
+     * The values of one field of each record, as stored by {@link CsvReader#readColumns}.
+     */
+    public static abstract class Column {
+        int size;
+
+        public int size() { return size; }
+
+        abstract void add(char[] text, int start, int end);
+
+        /** Returns an empty column of the same kind. */
+        public abstract Column newColumn();
+
+        /** Appends the values of <tt>that</tt>, which must be the same kind of column. */
+        public abstract void addAll(Column that);
+    }
+
+    /** Stores each field as an int, and an empty field as 0. */
+    public static class IntColumn extends Column {
+        int[] values = new int[16];
+
+        public int get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return values[index];
+        }
+
+        public int[] toArray() {
+            int[] copy = new int[size];
+            System.arraycopy(values, 0, copy, 0, size);
+            return copy;
+        }
+
+        void add(char[] text, int start, int end) {
+            if (size == values.length) values = grow(values, size + 1);
+            values[size ++] = start == end ? 0 : parseInt(text, start, end);
+        }
+
+        public Column newColumn() { return new IntColumn(); }
+
+        public void addAll(Column column) {
+            IntColumn that = (IntColumn) column;
+            if (size + that.size > values.length) values = grow(values, size + that.size);
+            System.arraycopy(that.values, 0, values, size, that.size);
+            size += that.size;
+        }
+
+        static int[] grow(int[] values, int capacity) {
+            int[] newvalues = new int[Math.max(values.length * 2, capacity)];
+            System.arraycopy(values, 0, newvalues, 0, values.length);
+            return newvalues;
+        }
+    }
+
+    /** Stores each field as a long, and an empty field as 0. */
+    public static class LongColumn extends Column {
+        long[] values = new long[16];
+
+        public long get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return values[index];
+        }
+
+        public long[] toArray() {
+            long[] copy = new long[size];
+            System.arraycopy(values, 0, copy, 0, size);
+            return copy;
+        }
+
+        void add(char[] text, int start, int end) {
+            if (size == values.length) values = grow(values, size + 1);
+            values[size ++] = start == end ? 0 : NumberParser.parseLong(text, start, end);
+        }
+
+        public Column newColumn() { return new LongColumn(); }
+
+        public void addAll(Column column) {
+            LongColumn that = (LongColumn) column;
+            if (size + that.size > values.length) values = grow(values, size + that.size);
+            System.arraycopy(that.values, 0, values, size, that.size);
+            size += that.size;
+        }
+
+        static long[] grow(long[] values, int capacity) {
+            long[] newvalues = new long[Math.max(values.length * 2, capacity)];
+            System.arraycopy(values, 0, newvalues, 0, values.length);
+            return newvalues;
+        }
+    }
+
+    /** Stores each field as a double, and an empty field as NaN. */
+    public static class DoubleColumn extends Column {
+        double[] values = new double[16];
+
+        public double get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return values[index];
+        }
+
+        public double[] toArray() {
+            double[] copy = new double[size];
+            System.arraycopy(values, 0, copy, 0, size);
+            return copy;
+        }
+
+        void add(char[] text, int start, int end) {
+            if (size == values.length) values = grow(values, size + 1);
+            values[size ++] = start == end ? Double.NaN : NumberParser.parseDouble(text, start, end);
+        }
+
+        public Column newColumn() { return new DoubleColumn(); }
+
+        public void addAll(Column column) {
+            DoubleColumn that = (DoubleColumn) column;
+            if (size + that.size > values.length) values = grow(values, size + that.size);
+            System.arraycopy(that.values, 0, values, size, that.size);
+            size += that.size;
+        }
+
+        static double[] grow(double[] values, int capacity) {
+            double[] newvalues = new double[Math.max(values.length * 2, capacity)];
+            System.arraycopy(values, 0, newvalues, 0, values.length);
+            return newvalues;
+        }
+    }
+
+    /**
+     * Stores the characters of every field end to end in one shared array. Value i is
+     * <tt>chars()[start(i)]</tt> up to <tt>chars()[end(i)]</tt>.
+     */
+    public static class TextColumn extends Column {
+        char[] chars = new char[256];
+        int[] ends = new int[16];
+        int length;
+
+        public char[] chars() { return chars; }
+
+        public int start(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return index == 0 ? 0 : ends[index - 1];
+        }
+
+        public int end(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return ends[index];
+        }
+
+        public String get(int index) {
+            int start = start(index);
+            return new String(chars, start, ends[index] - start);
+        }
+
+        void add(char[] text, int start, int end) {
+            if (size == ends.length) ends = IntColumn.grow(ends, size + 1);
+            append(text, start, end - start);
+            ends[size ++] = length;
+        }
+
+        public Column newColumn() { return new TextColumn(); }
+
+        public void addAll(Column column) {
+            TextColumn that = (TextColumn) column;
+            if (size + that.size > ends.length) ends = IntColumn.grow(ends, size + that.size);
+            for (int i = 0; i < that.size; i ++) ends[size + i] = that.ends[i] + length;
+            append(that.chars, 0, that.length);
+            size += that.size;
+        }
+
+        private void append(char[] text, int start, int n) {
+            if (length + n > chars.length) {
+                char[] newchars = new char[Math.max(chars.length * 2, length + n)];
+                System.arraycopy(chars, 0, newchars, 0, length);
+                chars = newchars;
+            }
+            System.arraycopy(text, start, chars, length, n);
+            length += n;
+        }
+    }
+
+    // Checks that fields are split and unquoted as RFC 4180 specifies, that double fields parse
+    // as Double.parseDouble() parses them, and that malformed numeric fields throw
+    // NumberFormatException.
+    public static class Test {
+        public static void main(String[] args) throws IOException {
+            checkFields();
+            checkNumbers();
+        }
+
+        // Each record is shown as its fields in brackets, followed by a slash.
+        static void checkFields() throws IOException {
+            String[][] cases = {
+                { "\"a,b\",\"c\"\"d\"", "[a,b][c\"d]/" },
+                { "\"x\ny\",z\nw\n", "[x\ny][z]/[w]/" },
+                { "a,b\rc,d\r", "[a][b]/[c][d]/" },
+                { "a,b\r\nc\r\n", "[a][b]/[c]/" },
+                { "a,b,\nc,\n", "[a][b][]/[c][]/" },
+                { "a,\"\"", "[a][]/" },
+                { "\"\"\"\",x\"", "[\"][x\"]/" },
+            };
+            for (int i = 0; i < cases.length; i ++) {
+                CsvReader reader = new CsvReader(new CharSequenceTokenizer(cases[i][0]));
+                StringBuffer b = new StringBuffer();
+                while (reader.nextRecord()) {
+                    while (reader.nextField()) b.append('[').append(reader.fieldText()).append(']');
+                    b.append('/');
+                }
+                if (!b.toString().equals(cases[i][1]))
+                    throw new AssertionError(cases[i][0] + " read as " + b + ", not " + cases[i][1]);
+            }
+            System.out.println("fields ok");
+        }
+
+        static void checkNumbers() throws IOException {
+            String[] doubles = { "0", "-0", "+1", "1.5", ".5", "5.", "-.5", "1e5", "1E+5", "1.25e-3", "123456789012345678901",
+                                 "0.000001", "1e400", "1e-400", "12345678901234567890e-30" };
+            for (int i = 0; i < doubles.length; i ++) {
+                double expected = Double.parseDouble(doubles[i]);
+                double value = parseDouble(doubles[i]);
+                if (Double.doubleToLongBits(value) != Double.doubleToLongBits(expected))
+                    throw new AssertionError(doubles[i] + " parsed as " + value + ", not " + expected);
+            }
+            String[] bad = { "12abc", "\"1,5\"", "abc", "1.2.3", "1.5x", "-", "1e", "1e+", ".", "e5", "1e5x", "Infinity", "NaN",
+                             "0x10", "1d", "1 " };
+            for (int i = 0; i < bad.length; i ++) {
+                try {
+                    double value = parseDouble(bad[i]);
+                    throw new AssertionError(bad[i] + " parsed as " + value);
+                }
+                catch (NumberFormatException e) { }
+                try {
+                    CsvReader reader = new CsvReader(new CharSequenceTokenizer(bad[i]));
+                    reader.nextRecord();
+                    reader.nextField();
+                    long value = reader.fieldLong();
+                    throw new AssertionError(bad[i] + " parsed as " + value);
+                }
+                catch (NumberFormatException e) { }
+            }
+            System.out.println("number fields ok");
+        }
+
+        static double parseDouble(String text) throws IOException {
+            DoubleColumn column = new DoubleColumn();
+            new CsvReader(new CharSequenceTokenizer(text)).readColumns(new Column[] { column });
+            return column.get(0);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package classes;
+
+class Delimiters {
+
+    static final int SHORT_PATTERN = 8;
+
+    String delimiters;
+    boolean matchAll;
+    boolean[] latin1;
+    int[] shift;
+
+    Delimiters(String delimiters, boolean matchAll) {
+        this.delimiters = delimiters;
+        this.matchAll = matchAll;
+        int m = delimiters.length();
+        if (matchAll) {
+            shift = new int[256];
+            java.util.Arrays.fill(shift, m);
+            for (int j = 0; j < m - 1; j ++) shift[delimiters.charAt(j) & 0xFF] = m - 1 - j;
+        }
+        else {
+            latin1 = new boolean[256];
+            for (int j = 0; j < m; j ++)
+                if (delimiters.charAt(j) < 256) latin1[delimiters.charAt(j)] = true;
+        }
+    }
+
+    boolean matches(String delimiters, boolean matchAll) {
+        return this.matchAll == matchAll && this.delimiters.equals(delimiters);
+    }
+
+    boolean matches(char[] delimiters, boolean matchAll) {
+        if (this.matchAll != matchAll || this.delimiters.length() != delimiters.length) return false;
+        for (int i = 0; i < delimiters.length; i ++) if (this.delimiters.charAt(i) != delimiters[i]) return false;
+        return true;
+    }
+
+    int length() { return matchAll ? delimiters.length() : 1; }
+
+    int find(char[] text, int from, int to) {
+        return matchAll ? match(text, from, to) : findAny(text, from, to);
+    }
+
+    private int findAny(char[] text, int from, int to) {
+        boolean[] latin1 = this.latin1;
+        for (int i = from; i < to; i ++) {
+            char c = text[i];
+            if (c < 256 ? latin1[c] : delimiters.indexOf(c) != -1) return i;
+        }
+        return -1;
+    }
+
+    // Boyer-Moore-Horspool, with the shift table indexed by the low byte of each character. Each
+    // step's shift depends on the character it read, so a short pattern, whose shifts are
+    // short, is found faster by looking for its first character with indexOf() and comparing
+    // the rest.
+    private int match(char[] text, int from, int to) {
+        String pattern = delimiters;
+        int m = pattern.length();
+        if (m < SHORT_PATTERN) {
+            char first = pattern.charAt(0);
+            for (int i = from; (i = indexOf(text, first, i, to - m + 1)) != -1; i ++) {
+                int j = 1;
+                while (j < m && text[i + j] == pattern.charAt(j)) j ++;
+                if (j == m) return i;
+            }
+            return -1;
+        }
+        char last = pattern.charAt(m - 1);
+        for (int i = from; i <= to - m; ) {
+            char c = text[i + m - 1];
+            if (c == last) {
+                int j = m - 2;
+                while (j >= 0 && text[i + j] == pattern.charAt(j)) j --;
+                if (j < 0) return i;
+            }
+            i += shift[c & 0xFF];
+        }
+        return -1;
+    }
+
+    static int indexOf(char[] text, char c, int from, int to) {
+        for (int i = from; i < to; i ++) if (text[i] == c) return i;
+        return -1;
+    }
+}
@@ -0,0 +1,377 @@
+package classes;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Keeps the token stream of an editable document up to date. The document is held in a gap
+ * buffer, and so are its tokens: tokens after the gap store their offsets and lines relative
+ * to the end of the document, so that an edit does not have to renumber the rest of the file.
+ * Each token records a checkpoint from which tokenizing can resume: the offset, line and
+ * column at which the tokenizer began reading it. No other state carries over from one token
+ * to the next, and quoted text is always a single token, so no checkpoint is inside a quote.
+ * A token may depend on up to LOOKAHEAD characters after it, as "1e+" does on the digit
+ * that may follow it, so after an edit tokenizing resumes at the last checkpoint at least
+ * LOOKAHEAD characters before the edit, and stops as soon as it reaches a checkpoint that the
+ * old token stream had at the same place and column.
+ */
+public class IncrementalTokenizer {
+
+    char[] chars = new char[1024];
+    int gapStart = 0, gapEnd = chars.length;
+    int length = 0, lineCount = 0;
+
+    // Each token is a column of these arrays. MARK is where the tokenizer was when it started
+    // reading the token, before any skipped spaces or opening quote, and is the checkpoint
+    // for re-tokenizing from that token.
+    static final int TYPE = 0, KEYWORD = 1, START = 2, LENGTH = 3, LINE = 4, COLUMN = 5,
+                     MARK = 6, MARK_LINE = 7, MARK_COLUMN = 8;
+    // Tokens after the gap store these fields relative to the document length or line count.
+    static final boolean[] OFFSET = { false, false, true, false, false, false, true, false, false };
+    static final boolean[] LINES = { false, false, false, false, true, false, false, true, false };
+    // How far past its end AbstractTokenizer.next() may read to decide where a token ends: a
+    // number followed by an exponent marker and sign looks at the character after the sign.
+    static final int LOOKAHEAD = 3;
+
+    int[][] tokens = new int[9][256];
+    int capacity = 256;
+    int size = 0;
+    int tokenGap = 0;
+
+    boolean trackPosition;
+    Lexer lexer = new Lexer();
+    int changedFrom, changedTo;
+
+    public IncrementalTokenizer(AbstractTokenizer configuration, CharSequence text) throws IOException {
+        lexer.copyConfiguration(configuration);
+        trackPosition = configuration.trackPosition;
+        replace(0, 0, text);
+    }
+
+    public int length() { return length; }
+
+    public char charAt(int offset) {
+        if (offset < 0 || offset >= length) throw new IndexOutOfBoundsException(String.valueOf(offset));
+        return offset < gapStart ? chars[offset] : chars[offset + gapEnd - gapStart];
+    }
+
+    public void getChars(int start, int end, char[] dst, int offset) {
+        if (start < 0 || start > end || end > length) throw new IndexOutOfBoundsException(start + "," + end);
+        if (start < gapStart) {
+            int n = Math.min(end, gapStart) - start;
+            System.arraycopy(chars, start, dst, offset, n);
+            start += n;
+            offset += n;
+        }
+        if (start < end) System.arraycopy(chars, start + gapEnd - gapStart, dst, offset, end - start);
+    }
+
+    public String toString() {
+        char[] text = new char[length];
+        getChars(0, length, text, 0);
+        return new String(text);
+    }
+
+    public int size() { return size; }
+
+    public int tokenType(int index) { return get(TYPE, index); }
+
+    public int tokenKeyword(int index) {
+        return get(TYPE, index) == Tokenizer.KEYWORD ? get(KEYWORD, index) : -1;
+    }
+
+    public int tokenOffset(int index) { return get(START, index); }
+
+    public int tokenLength(int index) { return get(LENGTH, index); }
+
+    public int tokenLine(int index) { return trackPosition ? get(LINE, index) : 0; }
+
+    public int tokenColumn(int index) { return trackPosition ? get(COLUMN, index) : 0; }
+
+    public String tokenText(int index) {
+        int start = tokenOffset(index);
+        char[] text = new char[tokenLength(index)];
+        getChars(start, start + text.length, text, 0);
+        return new String(text);
+    }
+
+    /**
+     * Returns the index of the last token that starts at or before the specified offset, or
+     * -1 if there is no such token.
+     */
+    public int tokenAt(int offset) { return search(START, offset); }
+
+    /** The index of the first token that was re-tokenized by the last edit. */
+    public int changedFrom() { return changedFrom; }
+
+    /** The index just past the last token that was re-tokenized by the last edit. */
+    public int changedTo() { return changedTo; }
+
+    /**
+     * Replaces the characters from start to end with the specified text and re-tokenizes the
+     * part of the document affected by the change.
+     */
+    public void replace(int start, int end, CharSequence text) throws IOException {
+        if (start < 0 || start > end || end > length) throw new IndexOutOfBoundsException(start + "," + end);
+
+        // Every token before the checkpoint ends at least LOOKAHEAD characters before the edit,
+        // so none of them read any of the changed text.
+        int restart = search(MARK, start - LOOKAHEAD);
+        int offset = 0, line = 1, column = 1;
+        if (restart != -1) {
+            offset = get(MARK, restart);
+            line = get(MARK_LINE, restart);
+            column = get(MARK_COLUMN, restart);
+        }
+        else restart = 0;
+        moveTokenGap(restart);
+
+        moveGap(end);
+        for (int i = start; i < end; i ++) if (chars[i] == '\n') lineCount --;
+        gapStart = start;
+        length -= end - start;
+        int n = text.length();
+        if (gapEnd - gapStart < n) growGap(n);
+        for (int i = 0; i < n; i ++) {
+            char c = text.charAt(i);
+            if (c == '\n') lineCount ++;
+            chars[gapStart ++] = c;
+        }
+        length += n;
+
+        retokenize(offset, line, column, start + n);
+    }
+
+    // Tokenizes from the specified checkpoint, inserting new tokens at the token gap and
+    // discarding the old tokens after it until the two token streams line up again at or
+    // after the end of the edit.
+    private void retokenize(int offset, int line, int column, int editEnd) throws IOException {
+        Lexer lexer = this.lexer;
+        lexer.reset(offset, line, column);
+        changedFrom = tokenGap;
+        int type;
+        while ((type = lexer.next()) != Tokenizer.EOF) {
+            while (tokenGap < size) {
+                int old = get(MARK, tokenGap);
+                if (old > lexer.mark) break;
+                if (old == lexer.mark && old >= editEnd && get(MARK_COLUMN, tokenGap) == lexer.markColumn) {
+                    changedTo = tokenGap;
+                    return;
+                }
+                size --;
+            }
+            if (size == capacity) growTokens();
+            int i = tokenGap ++;
+            size ++;
+            int[][] tokens = this.tokens;
+            tokens[TYPE][i] = type;
+            tokens[KEYWORD][i] = lexer.tokenKeyword();
+            tokens[START][i] = (int) lexer.textOffset + lexer.tokenStart;
+            tokens[LENGTH][i] = lexer.tokenLength();
+            tokens[LINE][i] = lexer.line(lexer.tokenStart);
+            tokens[COLUMN][i] = lexer.column(lexer.tokenStart);
+            tokens[MARK][i] = lexer.mark;
+            tokens[MARK_LINE][i] = lexer.markLine;
+            tokens[MARK_COLUMN][i] = lexer.markColumn;
+        }
+        size = tokenGap;
+        changedTo = tokenGap;
+    }
+
+    private int get(int field, int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+        if (index < tokenGap) return tokens[field][index];
+        int value = tokens[field][index + capacity - size];
+        if (OFFSET[field]) value += length;
+        else if (LINES[field]) value += lineCount;
+        return value;
+    }
+
+    // Returns the last token whose field is at or before the specified offset, or -1.
+    private int search(int field, int offset) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (get(field, mid) <= offset) low = mid + 1;
+            else high = mid - 1;
+        }
+        return high;
+    }
+
+    private void moveTokenGap(int index) {
+        int shift = capacity - size;
+        for (int field = 0; field < tokens.length; field ++) {
+            int[] data = tokens[field];
+            int base = OFFSET[field] ? length : LINES[field] ? lineCount : 0;
+            for (int i = tokenGap - 1; i >= index; i --) data[i + shift] = data[i] - base;
+            for (int i = tokenGap; i < index; i ++) data[i] = data[i + shift] + base;
+        }
+        tokenGap = index;
+    }
+
+    private void growTokens() {
+        int after = size - tokenGap;
+        for (int field = 0; field < tokens.length; field ++) {
+            int[] newdata = new int[capacity * 2];
+            System.arraycopy(tokens[field], 0, newdata, 0, tokenGap);
+            System.arraycopy(tokens[field], capacity - after, newdata, capacity * 2 - after, after);
+            tokens[field] = newdata;
+        }
+        capacity *= 2;
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int n = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+        }
+        else if (offset > gapStart) {
+            int n = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+        }
+    }
+
+    private void growGap(int n) {
+        int after = chars.length - gapEnd;
+        char[] newchars = new char[Math.max(chars.length * 2, length + n + 1024)];
+        System.arraycopy(chars, 0, newchars, 0, gapStart);
+        System.arraycopy(chars, gapEnd, newchars, newchars.length - after, after);
+        gapEnd = newchars.length - after;
+        chars = newchars;
+    }
+
+    // Reads the document from a checkpoint. Its buffer grows rather than returning OVERFLOW,
+    // since the document already holds all of the text.
+    class Lexer extends AbstractTokenizer {
+        int mark, markLine, markColumn;
+
+        void reset(int offset, int line, int column) {
+            if (text == null) text = new char[4096];
+            textOffset = offset;
+            if (trackPosition) lineIndex = new LineIndex(offset, line, column);
+            p = tokenStart = tokenEnd = numChars = 0;
+            tokenType = BOF;
+            eof = false;
+        }
+
+        public int next() throws IOException {
+            mark = (int) textOffset + p;
+            markLine = line(p);
+            markColumn = column(p);
+            return super.next();
+        }
+
+        int line(int index) { return trackPosition ? lineAt(index) : 0; }
+
+        int column(int index) { return trackPosition ? columnAt(index) : 0; }
+
+        protected void createBuffer(int bufferSize) { }
+
+        protected boolean fillBuffer() {
+            int position = (int) textOffset + numChars;
+            if (position >= length) return false;
+
+            if (tokenStart > 0) {
+                System.arraycopy(text, tokenStart, text, 0, numChars - tokenStart);
+                textOffset += tokenStart;
+                tokenEnd -= tokenStart;
+                p -= tokenStart;
+                numChars -= tokenStart;
+                tokenStart = 0;
+            }
+            if (numChars == text.length) {
+                char[] newtext = new char[text.length * 2];
+                System.arraycopy(text, 0, newtext, 0, numChars);
+                text = newtext;
+            }
+
+            int n = Math.min(text.length - numChars, length - position);
+            getChars(position, position + n, text, numChars);
+            numChars += n;
+            return true;
+        }
+    }
+
+    public static class Test {
+        public static void main(String[] args) throws IOException {
+            checkEdits();
+            if (args.length == 0) return;
+
+            Reader in = new FileReader(args[0]);
+            StringBuffer b = new StringBuffer();
+            char[] buffer = new char[4096];
+            int n;
+            while((n = in.read(buffer)) != -1) b.append(buffer, 0, n);
+            in.close();
+
+            CharSequenceTokenizer config = new CharSequenceTokenizer("");
+            config.tokenizeWords(true).tokenizeNumbers(true).skipSpaces(true).quotes("\"", "\"")
+                  .trackPosition(true);
+            long start = System.currentTimeMillis();
+            IncrementalTokenizer t = new IncrementalTokenizer(config, b);
+            System.out.println(t.size() + " tokens in " + (System.currentTimeMillis() - start) + "ms");
+
+            // Types or deletes a character at a cursor that jumps somewhere else every 100 edits.
+            Random random = new Random(42);
+            int edits = 100000, retokenized = 0, cursor = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < edits; i ++) {
+                if (i % 100 == 0) cursor = random.nextInt(t.length());
+                if (random.nextInt(4) != 0) t.replace(cursor, cursor ++, "x");
+                else if (cursor > 0) t.replace(-- cursor, cursor + 1, "");
+                retokenized += t.changedTo() - t.changedFrom();
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.println(edits + " edits, " + retokenized + " tokens re-tokenized, " +
+                               (elapsed / edits / 1000.0) + "us per edit");
+        }
+
+        // Checks edits that change how a number before the edit ends, then random edits of
+        // random documents, against tokenizing each edited document from scratch.
+        static void checkEdits() throws IOException {
+            CharSequenceTokenizer config = new CharSequenceTokenizer("");
+            config.tokenizeWords(true).tokenizeNumbers(true, true, true).skipSpaces(true).quotes("\"", "\"")
+                  .trackPosition(true);
+            String[][] cases = { { "1e", "5" }, { "x -.", "5" }, { "1e+", "5" }, { "1e-5", "" }, { "-", ".5" } };
+            for (int i = 0; i < cases.length; i ++) {
+                IncrementalTokenizer t = new IncrementalTokenizer(config, cases[i][0]);
+                t.replace(t.length(), t.length(), cases[i][1]);
+                compare(t, config);
+            }
+
+            Random random = new Random(42);
+            String alphabet = "01e+-. x\n\"";
+            for (int document = 0; document < 3000; document ++) {
+                IncrementalTokenizer t = new IncrementalTokenizer(config, randomText(random, alphabet, 20));
+                for (int edit = 0; edit < 10; edit ++) {
+                    int start = random.nextInt(t.length() + 1);
+                    int end = start + random.nextInt(Math.min(3, t.length() - start) + 1);
+                    t.replace(start, end, randomText(random, alphabet, 3));
+                    compare(t, config);
+                }
+            }
+            System.out.println("edits match tokenizing from scratch");
+        }
+
+        static String randomText(Random random, String alphabet, int max) {
+            StringBuffer b = new StringBuffer();
+            for (int i = random.nextInt(max + 1); i > 0; i --) b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            return b.toString();
+        }
+
+        static void compare(IncrementalTokenizer t, AbstractTokenizer config) throws IOException {
+            IncrementalTokenizer expected = new IncrementalTokenizer(config, t.toString());
+            boolean same = t.size() == expected.size();
+            for (int i = 0; same && i < t.size(); i ++) {
+                same = t.tokenType(i) == expected.tokenType(i) && t.tokenOffset(i) == expected.tokenOffset(i) &&
+                    t.tokenLength(i) == expected.tokenLength(i) && t.tokenLine(i) == expected.tokenLine(i) &&
+                    t.tokenColumn(i) == expected.tokenColumn(i);
+            }
+            if (!same) throw new AssertionError("edited tokens differ for \"" + t + "\"");
+        }
+    }
+}
@@ -1,11 +1,30 @@
 package classes;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
 public class IntList implements Comparable {
 
     protected int[] data;
     protected int size;
 
     private static final int DEFAULT_CAPACITY = 8;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    // Lists longer than this are aggregated by splitting them across the common ForkJoinPool.
+    static final int PARALLEL_THRESHOLD = 64*1024;
 
     public IntList() { this(DEFAULT_CAPACITY); }
 
@@ -27,10 +46,137 @@ public class IntList implements Comparable {
     }
 
     public void add(int value) {
-        if ( size() == data.length ) setCapactity(size * 2);
+        if ( size() == data.length ) grow(size + 1);
         data[size++] = value;
     }
 
+    public void addAll(int[] values, int offset, int length) {
+        checkRange(values, offset, length);
+        ensureCapacity(size + length);
+        System.arraycopy(values, offset, data, size, length);
+        size += length;
+    }
+
+    public void addAll(IntList list) { addAll(list.data, 0, list.size); }
+
+    public void insert(int index, int value) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        if (size == data.length) grow(size + 1);
+        System.arraycopy(data, index, data, index + 1, size - index);
+        data[index] = value;
+        size ++;
+    }
+
+    public void insert(int index, int[] values, int offset, int length) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        checkRange(values, offset, length);
+        ensureCapacity(size + length);
+        System.arraycopy(data, index, data, index + length, size - index);
+        if (values == data && offset + length > index) {
+            // Inserting part of this list into itself: the values may just have moved.
+            int before = Math.max(0, Math.min(length, index - offset));
+            System.arraycopy(data, offset, data, index, before);
+            System.arraycopy(data, offset + before + length, data, index + before, length - before);
+        }
+        else System.arraycopy(values, offset, data, index, length);
+        size += length;
+    }
+
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException(from + ", " + to);
+        System.arraycopy(data, to, data, from, size - to);
+        size -= to - from;
+    }
+
+    public void sort() { Arrays.sort(data, 0, size); }
+
+    public void parallelSort() { Arrays.parallelSort(data, 0, size); }
+
+    // Returns the index of key if the list is sorted and contains it, or -(insertion point) - 1.
+    public int binarySearch(int key) { return Arrays.binarySearch(data, 0, size, key); }
+
+    // Sorts the list with a least-significant-digit radix sort, one byte per pass, which takes
+    // linear time but needs a temporary array as long as the list. A pass is skipped when
+    // every element has the same byte, as the high bytes of small values do.
+    public void radixSort() {
+        if (size < 256) {
+            sort();
+            return;
+        }
+        int[] counts = new int[4 * 256];
+        for (int i = 0; i < size; i ++) {
+            int value = data[i];
+            counts[value & 0xFF] ++;
+            counts[256 + ((value >>> 8) & 0xFF)] ++;
+            counts[512 + ((value >>> 16) & 0xFF)] ++;
+            counts[768 + ((value >>> 24) ^ 0x80)] ++;
+        }
+
+        int[] from = data, to = new int[size];
+        for (int pass = 0; pass < 4; pass ++) {
+            int shift = pass * 8, base = pass * 256;
+            int flip = pass == 3 ? 0x80 : 0;
+            if (counts[base + (((from[0] >>> shift) & 0xFF) ^ flip)] == size) continue;
+
+            int offset = 0;
+            for (int b = 0; b < 256; b ++) {
+                int count = counts[base + b];
+                counts[base + b] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i ++) {
+                int value = from[i];
+                to[counts[base + (((value >>> shift) & 0xFF) ^ flip)] ++] = value;
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != data) System.arraycopy(from, 0, data, 0, size);
+    }
+
+    // The spliterator and streams cover the list as it is when they are created, and the list
+    // must not be modified while they are in use.
+    public Spliterator.OfInt spliterator() { return Arrays.spliterator(data, 0, size); }
+
+    public IntStream stream() { return StreamSupport.intStream(spliterator(), false); }
+
+    public IntStream parallelStream() { return StreamSupport.intStream(spliterator(), true); }
+
+    public long sum() { return aggregate(Aggregate.SUM, 0, null); }
+
+    public int min() {
+        if (size == 0) throw new NoSuchElementException();
+        return (int) aggregate(Aggregate.MIN, 0, null);
+    }
+
+    public int max() {
+        if (size == 0) throw new NoSuchElementException();
+        return (int) aggregate(Aggregate.MAX, 0, null);
+    }
+
+    public int indexOf(int value) { return (int) aggregate(Aggregate.INDEX_OF, value, null); }
+
+    public boolean contains(int value) { return indexOf(value) != -1; }
+
+    // For large lists the predicate is called from several threads at once.
+    public int count(IntPredicate predicate) { return (int) aggregate(Aggregate.COUNT, 0, predicate); }
+
+    private long aggregate(int op, int value, IntPredicate predicate) {
+        Aggregate task = new Aggregate(op, data, 0, size, value, predicate);
+        if (size <= PARALLEL_THRESHOLD) task.compute();
+        else ForkJoinPool.commonPool().invoke(task);
+        return task.result;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity < 0) throw new OutOfMemoryError("IntList capacity overflow");
+        if (capacity > data.length) grow(capacity);
+    }
+
     public void set(int index, int value) {
         if (index < 0 || index >= size)
             throw new IndexOutOfBoundsException(String.valueOf(index));
@@ -47,6 +193,28 @@ public class IntList implements Comparable {
         return copy;
     }
 
+    // Writes the list as little-endian ints with no header, the format MappedIntList reads.
+    public void writeTo(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer bytes = ByteBuffer.allocateDirect(64*1024).order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer ints = bytes.asIntBuffer();
+            for (int i = 0; i < size; ) {
+                int n = Math.min(ints.capacity(), size - i);
+                ints.clear();
+                ints.put(data, i, n);
+                bytes.clear();
+                bytes.limit(n * 4);
+                while (bytes.hasRemaining()) channel.write(bytes);
+                i += n;
+            }
+        }
+        finally {
+            channel.close();
+        }
+    }
+
     public String toString() {
         StringBuffer b = new StringBuffer(size*7);
         b.append('[');
@@ -88,6 +256,96 @@ public class IntList implements Comparable {
         return this.size - that.size;
     }
 
+    // Grows to at least twice the current capacity, and at least DEFAULT_CAPACITY, so that a
+    // run of adds copies each element about once however small the list started.
+    private void grow(int capacity) {
+        if (capacity < 0 || capacity > MAX_CAPACITY) throw new OutOfMemoryError("IntList capacity overflow");
+        int n = (int) Math.min(MAX_CAPACITY, Math.max(2L * data.length, DEFAULT_CAPACITY));
+        setCapactity(Math.max(n, capacity));
+    }
+
+    private static void checkRange(int[] values, int offset, int length) {
+        if (offset < 0 || length < 0 || length > values.length - offset)
+            throw new IndexOutOfBoundsException(offset + ", " + length);
+    }
+
+    static class Aggregate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        static final int SUM = 0, MIN = 1, MAX = 2, INDEX_OF = 3, COUNT = 4;
+
+        int op;
+        int[] data;
+        int from, to;
+        int value;
+        IntPredicate predicate;
+        long result;
+
+        Aggregate(int op, int[] data, int from, int to, int value, IntPredicate predicate) {
+            this.op = op;
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.value = value;
+            this.predicate = predicate;
+        }
+
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                Aggregate left = new Aggregate(op, data, from, mid, value, predicate);
+                Aggregate right = new Aggregate(op, data, mid, to, value, predicate);
+                invokeAll(left, right);
+                switch (op) {
+                case MIN: result = Math.min(left.result, right.result); break;
+                case MAX: result = Math.max(left.result, right.result); break;
+                case INDEX_OF: result = left.result != -1 ? left.result : right.result; break;
+                default: result = left.result + right.result;
+                }
+                return;
+            }
+
+            // Simple counted loops, which the JIT compiler unrolls and vectorizes.
+            int[] data = this.data;
+            switch (op) {
+            case SUM: {
+                long sum = 0;
+                for (int i = from; i < to; i ++) sum += data[i];
+                result = sum;
+                break;
+            }
+            case MIN: {
+                int min = Integer.MAX_VALUE;
+                for (int i = from; i < to; i ++) min = Math.min(min, data[i]);
+                result = min;
+                break;
+            }
+            case MAX: {
+                int max = Integer.MIN_VALUE;
+                for (int i = from; i < to; i ++) max = Math.max(max, data[i]);
+                result = max;
+                break;
+            }
+            case INDEX_OF: {
+                int value = this.value;
+                result = -1;
+                for (int i = from; i < to; i ++) {
+                    if (data[i] == value) {
+                        result = i;
+                        break;
+                    }
+                }
+                break;
+            }
+            default: {
+                int count = 0;
+                for (int i = from; i < to; i ++) if (predicate.test(data[i])) count ++;
+                result = count;
+            }
+            }
+        }
+    }
+
     protected void setCapactity(int n) {
         assert (n >= size) : (n + "<" + size);
         if (n == data.length) return;
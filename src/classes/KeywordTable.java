@@ -0,0 +1,122 @@
+package classes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class KeywordTable {
+
+    char[][] words;
+    int[] hashes;
+    int[] indexes;
+    int mask;
+    int minLength = Integer.MAX_VALUE, maxLength = 0;
+
+    KeywordTable(String[] keywords) {
+        int capacity = 4;
+        while (capacity < keywords.length * 2) capacity <<= 1;
+        words = new char[capacity][];
+        hashes = new int[capacity];
+        indexes = new int[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < keywords.length; i ++) {
+            char[] word = keywords[i].toCharArray();
+            int slot = find(word, 0, word.length, hash(word, 0, word.length));
+            words[slot] = word;
+            hashes[slot] = hash(word, 0, word.length);
+            indexes[slot] = i;
+            minLength = Math.min(minLength, word.length);
+            maxLength = Math.max(maxLength, word.length);
+        }
+    }
+
+    int lookup(char[] text, int start, int end) {
+        int length = end - start;
+        if (length < minLength || length > maxLength) return -1;
+        int slot = find(text, start, end, hash(text, start, end));
+        return words[slot] == null ? -1 : indexes[slot];
+    }
+
+    private int find(char[] text, int start, int end, int hash) {
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        for (;;) {
+            char[] word = words[slot];
+            if (word == null) return slot;
+            if (hashes[slot] == hash && word.length == end - start) {
+                int i = 0;
+                while (i < word.length && word[i] == text[start + i]) i ++;
+                if (i == word.length) return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(char[] text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i ++) h = 31 * h + text[i];
+        return h;
+    }
+
+    public static class Benchmark {
+        public static void main(String[] args) {
+            String[] keywords = {
+                "abstract", "boolean", "break", "byte", "case", "catch", "char", "class", "continue",
+                "default", "do", "double", "else", "extends", "final", "finally", "float", "for", "if",
+                "implements", "import", "instanceof", "int", "interface", "long", "new", "package",
+                "private", "protected", "public", "return", "short", "static", "super", "switch",
+                "this", "throw", "throws", "try", "void", "while"
+            };
+            String[] identifiers = {
+                "tokenStart", "text", "i", "numChars", "wordRecognizer", "buffer", "x", "result"
+            };
+
+            int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+            StringBuffer b = new StringBuffer();
+            java.util.Random random = new java.util.Random(42);
+            for (int i = 0; i < n; i ++) {
+                if (random.nextBoolean()) b.append(keywords[random.nextInt(keywords.length)]);
+                else b.append(identifiers[random.nextInt(identifiers.length)]);
+                b.append(' ');
+            }
+            char[] text = b.toString().toCharArray();
+
+            Map<String, Integer> map = new HashMap<String, Integer>(keywords.length);
+            for (int i = 0; i < keywords.length; i ++) map.put(keywords[i], Integer.valueOf(i));
+            KeywordTable table = new KeywordTable(keywords);
+
+            for (int round = 0; round < 5; round ++) {
+                long start = System.nanoTime();
+                long mapHits = lookupAll(map, text);
+                long mapTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long tableHits = lookupAll(table, text);
+                long tableTime = System.nanoTime() - start;
+
+                if (mapHits != tableHits) throw new AssertionError(mapHits + " != " + tableHits);
+                System.out.println("round " + round + ": HashMap " + mapTime / n + " ns/word, " +
+                                   "KeywordTable " + tableTime / n + " ns/word");
+            }
+        }
+
+        static long lookupAll(Map<String, Integer> map, char[] text) {
+            long hits = 0;
+            for (int s = 0, e = 0; s < text.length; s = e + 1) {
+                for (e = s; text[e] != ' '; e ++) ;
+                Integer index = map.get(new String(text, s, e - s));
+                if (index != null) hits += index.intValue();
+            }
+            return hits;
+        }
+
+        static long lookupAll(KeywordTable table, char[] text) {
+            long hits = 0;
+            for (int s = 0, e = 0; s < text.length; s = e + 1) {
+                for (e = s; text[e] != ' '; e ++) ;
+                int index = table.lookup(text, s, e);
+                if (index != -1) hits += index;
+            }
+            return hits;
+        }
+    }
+}
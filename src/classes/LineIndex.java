@@ -0,0 +1,97 @@
+package classes;
+
+// The offsets of the newlines in a tokenizer's buffer, from which line and column numbers
+// are computed on demand. Newlines are indexed lazily, up to the position being asked about,
+// and before the tokenizer discards the start of its buffer.
+class LineIndex {
+
+    static final int SCAN_AHEAD = 4096;
+
+    long[] newlines = new long[64];
+    int first, last, hint;
+    long located = -1;
+    int line, column;
+    int discarded;
+    long lastDiscarded;
+    long scanned;
+    int baseLine;
+
+    LineIndex(long offset, int line, int column) {
+        scanned = offset;
+        baseLine = line;
+        lastDiscarded = offset - column;
+    }
+
+    void scan(char[] text, long textOffset, int to) {
+        int from = (int) (scanned - textOffset);
+        if (from >= to) return;
+        long[] newlines = this.newlines;
+        int last = this.last;
+        for (int i = from; ; i ++) {
+            while (i < to && text[i] != '\n') i ++;
+            if (i == to) break;
+            if (last == newlines.length) {
+                this.last = last;
+                newlines = grow();
+                last = this.last;
+            }
+            newlines[last ++] = textOffset + i;
+        }
+        this.last = last;
+        scanned = textOffset + to;
+    }
+
+    void discard(long before) {
+        while (first < last && newlines[first] < before) {
+            lastDiscarded = newlines[first ++];
+            discarded ++;
+            located = -1;
+        }
+    }
+
+    // Sets line and column to the position of text[index], first indexing the newlines up to
+    // that position, or in bulk up to SCAN_AHEAD characters further if the buffer holds them.
+    void locate(char[] text, long textOffset, int index, int numChars) {
+        long position = textOffset + index;
+        if (position == located) return;
+        if (position > scanned) scan(text, textOffset, Math.max(index, Math.min(numChars, index + SCAN_AHEAD)));
+        int i = search(position);
+        line = baseLine + discarded + (i - first);
+        column = (int) (position - (i > first ? newlines[i - 1] : lastDiscarded));
+        located = position;
+    }
+
+    // Returns the index of the first newline at or after position. Positions are usually asked
+    // about in increasing order, so this first steps forward from the last answer.
+    private int search(long position) {
+        int i = Math.max(hint, first);
+        if (i == first || newlines[i - 1] < position) {
+            while (i < last && newlines[i] < position) {
+                if (++ i - hint > 8) return hint = binarySearch(position, i, last - 1);
+            }
+            return hint = i;
+        }
+        return hint = binarySearch(position, first, i - 1);
+    }
+
+    private int binarySearch(long position, int low, int high) {
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (newlines[mid] < position) low = mid + 1;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    private long[] grow() {
+        int n = last - first;
+        long[] newdata = n * 2 > newlines.length ? new long[newlines.length * 2] : newlines;
+        System.arraycopy(newlines, first, newdata, 0, n);
+        newlines = newdata;
+        hint = Math.max(hint - first, 0);
+        located = -1;
+        first = 0;
+        last = n;
+        return newdata;
+    }
+}
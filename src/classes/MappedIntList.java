@@ -0,0 +1,149 @@
+package classes;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only list of the ints in a file written by {@link IntList#writeTo}: little-endian
+ * ints with no header. The file is memory mapped and read in place, so opening it costs the
+ * same whatever its size, and only the pages that are read are loaded. A mapping is limited
+ * to 2GB, so a larger file is mapped in segments of SEGMENT_SIZE ints. The mappings stay
+ * valid after the file is closed and are released when the list is garbage collected.
+ */
+public class MappedIntList {
+
+    static final int SEGMENT_BITS = 28;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    IntBuffer[] segments;
+    int size;
+
+    MappedIntList(IntBuffer[] segments, int size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    public static MappedIntList open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if ((length & 3) != 0) throw new IOException(path + ": length " + length + " is not a whole number of ints");
+            if (length / 4 > Integer.MAX_VALUE - 8) throw new IOException(path + ": too many ints for a list: " + length / 4);
+            int size = (int) (length / 4);
+            IntBuffer[] segments = new IntBuffer[(size + SEGMENT_MASK) >>> SEGMENT_BITS];
+            for (int i = 0; i < segments.length; i ++) {
+                long start = (long) i << SEGMENT_BITS;
+                int n = Math.min(SEGMENT_SIZE, (int) (size - start));
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start * 4, n * 4L)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+            return new MappedIntList(segments, size);
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    public int size() { return size; }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+        return segments[index >>> SEGMENT_BITS].get(index & SEGMENT_MASK);
+    }
+
+    // Copies length elements starting at index into dst.
+    public void get(int index, int[] dst, int offset, int length) {
+        if (index < 0 || length < 0 || index > size - length)
+            throw new IndexOutOfBoundsException(index + ", " + length);
+        if (offset < 0 || length > dst.length - offset)
+            throw new IndexOutOfBoundsException(offset + ", " + length);
+        while (length > 0) {
+            int position = index & SEGMENT_MASK;
+            int n = Math.min(length, SEGMENT_SIZE - position);
+            segments[index >>> SEGMENT_BITS].get(position, dst, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public int[] toArray() {
+        int[] copy = new int[size];
+        get(0, copy, 0, size);
+        return copy;
+    }
+
+    public IntList toIntList() {
+        IntList list = new IntList(0);
+        list.data = toArray();
+        list.size = size;
+        return list;
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int s = 0; s < segments.length; s ++) {
+            IntBuffer segment = segments[s];
+            for (int i = 0, n = segment.limit(); i < n; i ++) sum += segment.get(i);
+        }
+        return sum;
+    }
+
+    // As Arrays.binarySearch() does for a sorted list: returns the index of key, or
+    // -(insertion point) - 1 if the list does not contain it.
+    public int binarySearch(int key) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = segments[mid >>> SEGMENT_BITS].get(mid & SEGMENT_MASK);
+            if (value < key) low = mid + 1;
+            else if (value > key) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    // Writes a list of ints to a file, then compares reading it back with a DataInputStream
+    // against mapping it.
+    public static class Benchmark {
+        public static void main(String[] args) throws IOException {
+            int n = args.length > 0 ? Integer.parseInt(args[0]) : 50000000;
+            Path path = Files.createTempFile("ints", ".bin");
+            try {
+                IntList list = new IntList(n);
+                for (int i = 0; i < n; i ++) list.add(i * 3);
+                long start = System.nanoTime();
+                list.writeTo(path);
+                System.out.println("writeTo: " + (System.nanoTime() - start) / 1000000 + "ms for " + 4L * n / 1024 / 1024 + "MB");
+
+                for (int round = 0; round < 3; round ++) {
+                    start = System.nanoTime();
+                    java.io.DataInputStream in = new java.io.DataInputStream(
+                        new java.io.BufferedInputStream(Files.newInputStream(path), 64*1024));
+                    long streamSum = 0;
+                    for (int i = 0; i < n; i ++) streamSum += Integer.reverseBytes(in.readInt());
+                    in.close();
+                    long streamTime = System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    MappedIntList mapped = open(path);
+                    long openTime = System.nanoTime() - start;
+                    long mappedSum = mapped.sum();
+                    long mappedTime = System.nanoTime() - start;
+                    System.out.println("DataInputStream: " + streamTime / 1000000 + "ms; mapped: open " +
+                                       openTime / 1000 + "us, open and sum " + mappedTime / 1000000 + "ms" +
+                                       (streamSum == mappedSum && mapped.binarySearch(3 * (n / 2)) == n / 2 ? "" : " MISMATCH"));
+                }
+            }
+            finally {
+                Files.delete(path);
+            }
+        }
+    }
+}
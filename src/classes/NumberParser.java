@@ -0,0 +1,103 @@
+package classes;
+
+// Parses NUMBER tokens in place. Digits may be any Unicode decimal digits, as they are for
+// tokenizing.
+class NumberParser {
+
+    static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    static long parseLong(char[] text, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text[i] == '-' || text[i] == '+')) negative = text[i ++] == '-';
+        if (i == end) throw error(text, start, end);
+
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (; i < end; i ++) {
+            int digit = digit(text[i]);
+            if (digit < 0 || value < (limit + digit) / 10) throw error(text, start, end);
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    // Accepts an optional sign, digits with an optional decimal point, and an optional exponent,
+    // as Double.parseDouble() does apart from its special forms. Uses the exact fast path when
+    // the digits fit in a double's mantissa and the power of ten is exactly representable;
+    // anything else goes to Double.parseDouble().
+    static double parseDouble(char[] text, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text[i] == '-' || text[i] == '+')) negative = text[i ++] == '-';
+
+        long mantissa = 0;
+        int digits = 0, scale = 0, mantissaDigits = 0;
+        boolean point = false;
+        for (; i < end; i ++) {
+            char c = text[i];
+            if (c == '.') {
+                if (point) throw error(text, start, end);
+                point = true;
+            }
+            else {
+                int digit = digit(c);
+                if (digit < 0) break;
+                mantissaDigits ++;
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0) digits ++;
+                    if (point) scale --;
+                }
+                else if (!point) scale ++;
+            }
+        }
+        if (mantissaDigits == 0) throw error(text, start, end);
+
+        int exponent = 0;
+        if (i < end) {
+            if (text[i] != 'e' && text[i] != 'E') throw error(text, start, end);
+            boolean negativeExponent = false;
+            i ++;
+            if (i < end && (text[i] == '-' || text[i] == '+')) negativeExponent = text[i ++] == '-';
+            if (i == end) throw error(text, start, end);
+            for (; i < end; i ++) {
+                int digit = digit(text[i]);
+                if (digit < 0) throw error(text, start, end);
+                if (exponent < 100000) exponent = exponent * 10 + digit;
+            }
+            if (negativeExponent) exponent = -exponent;
+        }
+        exponent += scale;
+
+        double value;
+        if (mantissa == 0) value = 0.0;
+        else if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+            value = (double) mantissa;
+            if (exponent >= 0) value *= POWERS_OF_TEN[exponent];
+            else value /= POWERS_OF_TEN[-exponent];
+        }
+        else {
+            char[] ascii = new char[end - start];
+            for (int j = 0; j < ascii.length; j ++) {
+                char c = text[start + j];
+                ascii[j] = c < 128 ? c : (char) ('0' + digit(c));
+            }
+            return Double.parseDouble(new String(ascii));
+        }
+        return negative ? -value : value;
+    }
+
+    static int digit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c < 128) return -1;
+        return Character.digit(c, 10);
+    }
+
+    static NumberFormatException error(char[] text, int start, int end) {
+        return new NumberFormatException("For input string: \"" + new String(text, start, end - start) + "\"");
+    }
+}
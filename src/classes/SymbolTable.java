@@ -0,0 +1,162 @@
+package classes;
+
+import java.io.*;
+
+/**
+ * Assigns each distinct word a dense int ID, in the order the words are first seen, so that a
+ * stream of words can be stored as an int[] and compared or hashed as ints. The characters of
+ * all the words are kept end to end in one char array, and a lookup hashes and compares the
+ * characters in place, so interning a word that has been seen before allocates nothing.
+ * A SymbolTable may be shared by any number of tokenizers, but is not thread-safe.
+ * @see Tokenizer#symbols
+ */
+public class SymbolTable {
+
+    char[] chars = new char[1024];
+    int charCount;
+    // Symbol i is chars[offsets[i]] to chars[offsets[i + 1]].
+    int[] offsets = new int[65];
+    int[] hashes = new int[64];
+    int size;
+    // Each slot holds a symbol ID plus one, or 0 if the slot is empty.
+    int[] slots = new int[128];
+    int mask = slots.length - 1;
+
+    public int size() { return size; }
+
+    public int intern(CharSequence word) {
+        char[] text = word.toString().toCharArray();
+        return intern(text, 0, text.length);
+    }
+
+    /** Returns the ID of <tt>word</tt>, or -1 if it has not been interned. */
+    public int lookup(CharSequence word) {
+        char[] text = word.toString().toCharArray();
+        return lookup(text, 0, text.length);
+    }
+
+    public String symbol(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(String.valueOf(id));
+        return new String(chars, offsets[id], offsets[id + 1] - offsets[id]);
+    }
+
+    public int symbolLength(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(String.valueOf(id));
+        return offsets[id + 1] - offsets[id];
+    }
+
+    public int intern(char[] text, int start, int end) {
+        int hash = hash(text, start, end);
+        int slot = find(text, start, end, hash);
+        if (slots[slot] != 0) return slots[slot] - 1;
+
+        int length = end - start;
+        if (charCount + length > chars.length) {
+            char[] newchars = new char[Math.max(chars.length * 2, charCount + length)];
+            System.arraycopy(chars, 0, newchars, 0, charCount);
+            chars = newchars;
+        }
+        if (size == hashes.length) {
+            int[] newhashes = new int[size * 2];
+            System.arraycopy(hashes, 0, newhashes, 0, size);
+            hashes = newhashes;
+            int[] newoffsets = new int[size * 2 + 1];
+            System.arraycopy(offsets, 0, newoffsets, 0, size + 1);
+            offsets = newoffsets;
+        }
+        System.arraycopy(text, start, chars, charCount, length);
+        charCount += length;
+        hashes[size] = hash;
+        offsets[size + 1] = charCount;
+        slots[slot] = ++ size;
+        if (size * 2 > slots.length) rehash();
+        return size - 1;
+    }
+
+    public int lookup(char[] text, int start, int end) {
+        return slots[find(text, start, end, hash(text, start, end))] - 1;
+    }
+
+    private int find(char[] text, int start, int end, int hash) {
+        int length = end - start;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        for (;;) {
+            int id = slots[slot] - 1;
+            if (id < 0) return slot;
+            int offset = offsets[id];
+            if (hashes[id] == hash && offsets[id + 1] - offset == length) {
+                int i = 0;
+                while (i < length && chars[offset + i] == text[start + i]) i ++;
+                if (i == length) return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id ++) {
+            int slot = (hashes[id] ^ (hashes[id] >>> 16)) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int hash(char[] text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i ++) h = 31 * h + text[i];
+        return h;
+    }
+
+    // Compares the memory needed to keep the words of a file as Strings with the memory
+    // needed to keep them as symbol IDs, and the time taken to produce each.
+    public static class Benchmark {
+        public static void main(String[] args) throws IOException {
+            Reader in = new FileReader(args[0]);
+            StringBuffer b = new StringBuffer();
+            char[] buffer = new char[4096];
+            int n;
+            while((n = in.read(buffer)) != -1) b.append(buffer, 0, n);
+            in.close();
+
+            for (int round = 0; round < 3; round ++) {
+                Runtime runtime = Runtime.getRuntime();
+                CharSequenceTokenizer t = new CharSequenceTokenizer(b);
+                t.tokenizeWords(true).tokenizeNumbers(true).skipSpaces(true);
+                System.gc();
+                long memory = runtime.totalMemory() - runtime.freeMemory();
+                long start = System.currentTimeMillis();
+                java.util.ArrayList<String> words = new java.util.ArrayList<String>();
+                while (t.next() != Tokenizer.EOF) if (t.tokenType() == Tokenizer.WORD) words.add(t.tokenText());
+                long elapsed = System.currentTimeMillis() - start;
+                System.gc();
+                memory = runtime.totalMemory() - runtime.freeMemory() - memory;
+                System.out.println("Strings: " + words.size() + " words in " + elapsed + "ms, " + memory / 1024 + "KB");
+                words = null;
+
+                t.reset(b);
+                SymbolTable symbols = new SymbolTable();
+                t.symbols(symbols);
+                System.gc();
+                memory = runtime.totalMemory() - runtime.freeMemory();
+                start = System.currentTimeMillis();
+                int[] ids = new int[1024];
+                int count = 0;
+                while ((n = t.nextSymbols(ids, count, ids.length - count)) > 0) {
+                    count += n;
+                    if (count == ids.length) {
+                        int[] newids = new int[ids.length * 2];
+                        System.arraycopy(ids, 0, newids, 0, count);
+                        ids = newids;
+                    }
+                }
+                elapsed = System.currentTimeMillis() - start;
+                System.gc();
+                memory = runtime.totalMemory() - runtime.freeMemory() - memory;
+                System.out.println("Symbols: " + count + " words, " + symbols.size() + " distinct, in " +
+                                   elapsed + "ms, " + memory / 1024 + "KB for " + ids.length + " IDs and the table");
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package classes;
+
+public class Token {
+
+    private int type, keyword, line, column;
+    private long offset;
+    private char[] chars;
+    private int start, length;
+
+    Token(int type, int keyword, long offset, int line, int column, char[] chars, int start, int length) {
+        this.type = type;
+        this.keyword = keyword;
+        this.offset = offset;
+        this.line = line;
+        this.column = column;
+        this.chars = chars;
+        this.start = start;
+        this.length = length;
+    }
+
+    public int type() { return type; }
+    public int keyword() { return keyword; }
+    public long offset() { return offset; }
+    public int length() { return length; }
+    public int line() { return line; }
+    public int column() { return column; }
+
+    public String text() { return new String(chars, start, length); }
+
+    public String toString() {
+        return "[" + type + ", " + text() + "; " + offset + "]";
+    }
+}
@@ -0,0 +1,183 @@
+package classes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+abstract class TokenSpliterator {
+
+    static final int MINIMUM_SPLIT = 64*1024;
+
+    AbstractTokenizer prototype;
+    TokenizerConfiguration configuration;
+    AbstractTokenizer tokenizer;
+    CharSequence text;
+    int start, end;
+    int lineBase;
+    int splitLines;
+    SplitPoints points;
+
+    TokenSpliterator(AbstractTokenizer tokenizer) {
+        if (tokenizer instanceof CharSequenceTokenizer && tokenizer.text == null) {
+            CharSequenceTokenizer t = (CharSequenceTokenizer) tokenizer;
+            this.prototype = tokenizer;
+            this.configuration = tokenizer.compile();
+            this.text = t.sequence;
+            this.start = t.start;
+            this.end = t.end;
+            if (tokenizer.testquotes || tokenizer.trackPosition) points = new SplitPoints(tokenizer, text, start);
+        }
+        else this.tokenizer = tokenizer;
+    }
+
+    TokenSpliterator(TokenSpliterator that, int start, int end, int lineBase) {
+        this.prototype = that.prototype;
+        this.configuration = that.configuration;
+        this.text = that.text;
+        this.start = start;
+        this.end = end;
+        this.lineBase = lineBase;
+        this.points = that.points;
+    }
+
+    boolean advance() {
+        try {
+            if (tokenizer == null) {
+                tokenizer = new CharSequenceTokenizer(text, start, end);
+                tokenizer.configure(configuration);
+            }
+            return tokenizer.next() != Tokenizer.EOF;
+        }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    int tokenLine() {
+        int line = tokenizer.tokenLine();
+        return line == 0 ? 0 : line + lineBase;
+    }
+
+    // Splits at a line start that is outside any quote, as io.ParallelTokenizer does, and
+    // stores the number of lines before the split point in splitLines.
+    int split() {
+        if (tokenizer != null || end - start < 2 * MINIMUM_SPLIT) return -1;
+        int mid = start + (end - start) / 2;
+        if (points != null) {
+            synchronized (points) {
+                int k = points.find(mid, end - MINIMUM_SPLIT);
+                if (k == -1) return -1;
+                splitLines = points.lines.get(k) - lineBase;
+                return points.positions.get(k);
+            }
+        }
+
+        for (int i = mid; i < end - MINIMUM_SPLIT; i ++) {
+            if (text.charAt(i - 1) == '\n' && !Character.isWhitespace(text.charAt(i))) {
+                splitLines = 0;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The line starts outside quotes in a text, with the number of lines before each, found by
+    // a single scan that goes only as far as splits need. With quotes or positions, a split
+    // point depends on all the text before it, and all the spliterators split from one share
+    // this scan rather than each scanning again from its own start. Only line starts at
+    // least GAP characters apart are kept.
+    static final class SplitPoints {
+        static final int GAP = 4096;
+
+        CharSequence text;
+        String openquotes, closequotes;
+        int scanned;
+        int closequote = -1, count;
+        IntList positions = new IntList(), lines = new IntList();
+
+        SplitPoints(AbstractTokenizer prototype, CharSequence text, int start) {
+            this.text = text;
+            this.openquotes = prototype.testquotes ? prototype.openquotes : "";
+            this.closequotes = prototype.closequotes;
+            this.scanned = start;
+        }
+
+        // Returns the index of the first split point at or after from and before limit, or -1
+        // if there is none.
+        int find(int from, int limit) {
+            int n = positions.size();
+            for (; (n == 0 || positions.get(n - 1) < from) && scanned < limit; scanned ++) {
+                char c = text.charAt(scanned);
+                if (closequote != -1) {
+                    if (c == closequote) closequote = -1;
+                }
+                else {
+                    if (scanned > 0 && text.charAt(scanned - 1) == '\n' && !Character.isWhitespace(c) &&
+                        (n == 0 || scanned - positions.get(n - 1) >= GAP)) {
+                        positions.add(scanned);
+                        lines.add(count);
+                        n ++;
+                    }
+                    int quoteindex = openquotes.indexOf(c);
+                    if (quoteindex != -1) closequote = closequotes.charAt(quoteindex);
+                }
+                if (c == '\n') count ++;
+            }
+            int k = positions.binarySearch(from);
+            if (k < 0) k = -k - 1;
+            return k < n && positions.get(k) < limit ? k : -1;
+        }
+    }
+
+    public long estimateSize() {
+        return tokenizer == null ? (end - start) / 4 : Long.MAX_VALUE;
+    }
+
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+
+    static class Tokens extends TokenSpliterator implements Spliterator<Token> {
+        Tokens(AbstractTokenizer tokenizer) { super(tokenizer); }
+        Tokens(Tokens that, int start, int end, int lineBase) { super(that, start, end, lineBase); }
+
+        public boolean tryAdvance(Consumer<? super Token> action) {
+            if (!advance()) return false;
+            AbstractTokenizer t = tokenizer;
+            char[] chars = new char[t.tokenEnd - t.tokenStart];
+            t.tokenInto(chars, 0);
+            action.accept(new Token(t.tokenType(), t.tokenKeyword(), t.tokenOffset(), tokenLine(),
+                                    t.tokenColumn(), chars, 0, chars.length));
+            return true;
+        }
+
+        public Spliterator<Token> trySplit() {
+            int split = split();
+            if (split == -1) return null;
+            Tokens prefix = new Tokens(this, start, split, lineBase);
+            start = split;
+            lineBase += splitLines;
+            return prefix;
+        }
+    }
+
+    static class Types extends TokenSpliterator implements Spliterator.OfInt {
+        Types(AbstractTokenizer tokenizer) { super(tokenizer); }
+        Types(Types that, int start, int end, int lineBase) { super(that, start, end, lineBase); }
+
+        public boolean tryAdvance(IntConsumer action) {
+            if (!advance()) return false;
+            action.accept(tokenizer.tokenType());
+            return true;
+        }
+
+        public Spliterator.OfInt trySplit() {
+            int split = split();
+            if (split == -1) return null;
+            Types prefix = new Types(this, start, split, lineBase);
+            start = split;
+            lineBase += splitLines;
+            return prefix;
+        }
+    }
+}
@@ -119,6 +119,20 @@ public interface Tokenizer {
      */
     public Tokenizer tokenizeNumbers(boolean tokenize);
 
+    /**
+     * Enable number tokenization, as {@link #tokenizeNumbers(boolean)} does, and specify which forms
+     * of number other than a run of digits should also be returned as a single {@link #NUMBER} token.
+     * A sign or decimal point only begins a number when it is immediately followed by a digit, and an
+     * exponent is only recognized when at least one digit follows it. Note that with signed numbers
+     * enabled, <tt>a-1</tt> is tokenized as a word followed by the number <tt>-1</tt>.
+     * @param signed whether a leading <tt>+</tt> or <tt>-</tt> is part of a number.
+     * @param decimal whether numbers may have a fractional part, such as <tt>3.14</tt> or <tt>.5</tt>.
+     * @param exponent whether numbers may have an exponent, such as <tt>6e23</tt> or <tt>1.5E-3</tt>.
+     * @return this Tokenizer object for method chaining.
+     * @see #tokenDoubleValue
+     */
+    public Tokenizer tokenizeNumbers(boolean signed, boolean decimal, boolean exponent);
+
     /**
      * Specify whether adjacent word characters should be coalesced into a single token.  The default is
      * false. Word characters are defined by a {@link WordRecognizer}.
@@ -151,6 +165,18 @@ public interface Tokenizer {
      */
     public Tokenizer keywords(String[] keywords);
 
+    /**
+     * Specify a {@link SymbolTable} in which to intern {@link #WORD} and {@link #KEYWORD} tokens, so
+     * that {@link #tokenSymbol} and {@link #nextSymbols} can return them as dense int IDs. Words are
+     * interned directly from the tokenizer's buffer, and only when one of those methods is called. The
+     * same table may be given to several tokenizers, so that a word has the same ID in all of them, as
+     * long as they are not used concurrently.
+     * @param symbols the table in which to intern words, or null (the default) for none.
+     * @return this Tokenizer object for method chaining.
+     * @see #tokenizeWords
+     */
+    public Tokenizer symbols(SymbolTable symbols);
+
     /**
      * Specify whether the tokenizer should keep track of the line number and column number for each
      * returned token. The default is false.
@@ -243,6 +269,44 @@ public interface Tokenizer {
      */
     public String tokenText();
 
+    /**
+     * Get the text of the current token without creating a String. The returned CharSequence is a
+     * view of the tokenizer's internal buffer: the same object is returned for every token, and its
+     * contents change whenever the current token changes. Call {@link CharSequence#toString} or
+     * {@link #tokenText} to obtain a copy that remains valid.
+     * @return a view of the current token, or null, when {@link #tokenType} returns {@link #BOF} or
+     *      {@link #EOF}.
+     * @see #tokenInto
+     */
+    public CharSequence tokenChars();
+
+    /**
+     * Copy the text of the current token into an array supplied by the caller.
+     * @param dst the array to copy characters into.
+     * @param offset the index in <tt>dst</tt> at which to store the first character of the token.
+     * @return the number of characters copied, which is the same as {@link #tokenLength}.
+     * @throws java.lang.IndexOutOfBoundsException if <tt>dst</tt> is too small to hold the token
+     *      at the specified offset.
+     * @see #tokenChars
+     */
+    public int tokenInto(char[] dst, int offset);
+
+    /**
+     * Get the position of the current token in the input.
+     * @return the number of characters of input that precede the first character of the current token,
+     *      or -1 when {@link #tokenType} returns {@link #BOF} or {@link #EOF}.
+     * @see #tokenLength
+     */
+    public long tokenOffset();
+
+    /**
+     * Get the length of the current token.
+     * @return the number of characters in the current token, or 0 when {@link #tokenType} returns
+     *      {@link #BOF} or {@link #EOF}.
+     * @see #tokenOffset
+     */
+    public int tokenLength();
+
     /**
      * Get the index of the tokenized keyword.
      * @return the index into the keywords array of the tokenized word or -1 if the current token
@@ -251,6 +315,36 @@ public interface Tokenizer {
      */
     public int tokenKeyword();
 
+    /**
+     * Get the value of the current {@link #NUMBER} token as a long, parsing it directly from the
+     * tokenizer's buffer.
+     * @return the value of the current token.
+     * @throws java.lang.IllegalStateException if the current token is not a {@link #NUMBER}.
+     * @throws java.lang.NumberFormatException if the token has a fractional part or an exponent, or
+     *      if its value does not fit in a long.
+     * @see #tokenDoubleValue
+     */
+    public long tokenLongValue();
+
+    /**
+     * Get the value of the current {@link #NUMBER} token as a double, parsing it directly from the
+     * tokenizer's buffer. The result is the same as that of {@link Double#parseDouble}.
+     * @return the value of the current token.
+     * @throws java.lang.IllegalStateException if the current token is not a {@link #NUMBER}.
+     * @see #tokenizeNumbers(boolean, boolean, boolean)
+     * @see #tokenLongValue
+     */
+    public double tokenDoubleValue();
+
+    /**
+     * Get the ID of the current token in the {@link SymbolTable} given to {@link #symbols}, interning
+     * it if it has not been seen before.
+     * @return the symbol ID of the current token if it is a {@link #WORD} or {@link #KEYWORD}, or -1
+     *      otherwise.
+     * @throws java.lang.IllegalStateException if no symbol table has been specified.
+     */
+    public int tokenSymbol();
+
     /**
      * Get the line number of the current token.
      * @return the line number of the start of the current token. Lines are numbered from 1, not 0. This
@@ -315,6 +409,65 @@ public interface Tokenizer {
      */
     public int next() throws IOException;
 
+    /**
+     * Read up to <tt>max</tt> tokens, as if by calling {@link #next} repeatedly, and store their types and
+     * positions in the specified arrays. Element <tt>i</tt> of each array describes the <tt>i</tt>th token
+     * read. Start and end offsets are the values {@link #tokenOffset} and {@link #tokenOffset} +
+     * {@link #tokenLength} would return for the token, truncated to an <tt>int</tt>; for inputs longer than
+     * 2<sup>31</sup>-1 characters only the difference between them is meaningful. When this method returns,
+     * the current token is the last token stored.
+     * @param types the array in which to store token types.
+     * @param starts the array in which to store the offset of the first character of each token.
+     * @param ends the array in which to store the offset just past the last character of each token.
+     * @param max the maximum number of tokens to read.
+     * @return the number of tokens read, which is less than <tt>max</tt> only when the end of input has
+     *      been reached, and 0 when {@link #next} would return {@link #EOF}.
+     * @throws java.lang.IndexOutOfBoundsException if <tt>max</tt> is negative or larger than the length of
+     *      any of the arrays.
+     * @see #next
+     */
+    public int nextBatch(int[] types, int[] starts, int[] ends, int max) throws IOException;
+
+    /**
+     * Read tokens, as if by calling {@link #next} repeatedly, and store the symbol IDs of up to
+     * <tt>length</tt> {@link #WORD} and {@link #KEYWORD} tokens in <tt>symbols</tt>, starting at
+     * <tt>offset</tt>. Tokens of other types are read but not stored. This produces the words of the
+     * input as a compact <tt>int[]</tt> stream, without creating a String for any of them. When this
+     * method returns, the current token is the last token stored.
+     * @param symbols the array in which to store symbol IDs.
+     * @param offset the index in <tt>symbols</tt> at which to store the first ID.
+     * @param length the maximum number of IDs to store.
+     * @return the number of IDs stored, which is less than <tt>length</tt> only when the end of input
+     *      has been reached, and 0 when there are no more words.
+     * @throws java.lang.IllegalStateException if no symbol table has been specified.
+     * @throws java.lang.IndexOutOfBoundsException if <tt>offset</tt> or <tt>length</tt> is negative, or
+     *      <tt>offset + length</tt> is larger than the length of <tt>symbols</tt>.
+     * @see #symbols
+     * @see #tokenSymbol
+     */
+    public int nextSymbols(int[] symbols, int offset, int length) throws IOException;
+
+    /**
+     * Return the remaining tokens of input as a stream, as if by calling {@link #next} repeatedly until it
+     * returns {@link #EOF}. Each element records the type, text, keyword index, offset and position of one
+     * token. The stream is sequential; call {@link java.util.stream.Stream#parallel} to tokenize with all
+     * available cores. Only tokenizers over in-memory text that have not started tokenizing can split their
+     * input for parallel execution, and they split it only at the start of a line that is outside any quote.
+     * The tokenizer must not be used directly while the stream is in use. An IOException thrown while
+     * reading input is rethrown as a {@link java.io.UncheckedIOException}.
+     * @return a stream of the remaining tokens.
+     * @see #tokenTypes
+     */
+    public java.util.stream.Stream<Token> tokens();
+
+    /**
+     * Return the types of the remaining tokens of input as a stream. This is just like {@link #tokens},
+     * but does not create an object for each token.
+     * @return a stream of the types of the remaining tokens.
+     * @see #tokens
+     */
+    public java.util.stream.IntStream tokenTypes();
+
     /**
      * Make the next character of input the curren token, and return it.
      * @return the next character or {#link #EOF} if there are no more.
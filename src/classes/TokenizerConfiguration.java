@@ -0,0 +1,86 @@
+package classes;
+
+/**
+ * A tokenizer configuration compiled into the tables that {@link AbstractTokenizer#next} runs
+ * from: for each Latin-1 character, the action that begins a token with that character, with
+ * the configuration's flags already applied, along with the character classes and keyword
+ * table. A TokenizerConfiguration is immutable, and so may be shared by any number of
+ * tokenizers in any number of threads, none of which then builds tables of its own.
+ * @see AbstractTokenizer#compile
+ * @see AbstractTokenizer#configure
+ */
+public final class TokenizerConfiguration {
+
+    static final int CHAR = 0, SPACE = 1, SKIP = 2, DIGIT = 3, SIGN = 4, WORD = 5, QUOTE = 6;
+
+    final boolean skipSpaces;
+    final boolean tokenizeSpaces;
+    final boolean tokenizeNumbers;
+    final boolean signedNumbers, decimalNumbers, exponentNumbers;
+    final boolean tokenizeWords;
+    final boolean testquotes;
+    final Tokenizer.WordRecognizer wordRecognizer;
+    final KeywordTable keywordTable;
+    final String openquotes, closequotes;
+    final boolean trackPosition;
+
+    final CharClassTable charClasses;
+    final byte[] actions = new byte[256];
+    final char[] closing = new char[256];
+
+    TokenizerConfiguration(AbstractTokenizer t) {
+        skipSpaces = t.skipSpaces;
+        tokenizeSpaces = t.tokenizeSpaces;
+        tokenizeNumbers = t.tokenizeNumbers;
+        signedNumbers = t.signedNumbers;
+        decimalNumbers = t.decimalNumbers;
+        exponentNumbers = t.exponentNumbers;
+        tokenizeWords = t.tokenizeWords;
+        testquotes = t.testquotes;
+        wordRecognizer = t.wordRecognizer;
+        keywordTable = t.keywordTable;
+        openquotes = t.openquotes;
+        closequotes = t.closequotes;
+        trackPosition = t.trackPosition;
+
+        charClasses = new CharClassTable(wordRecognizer, openquotes);
+        charClasses.fillWordParts();
+        for (char c = 0; c < 256; c ++) {
+            actions[c] = (byte) compute(c, true);
+            if (actions[c] == QUOTE) closing[c] = closequote(c);
+        }
+    }
+
+    int action(char c) {
+        return c < 256 ? actions[c] : compute(c, true);
+    }
+
+    // The action for a sign or decimal point that turned out not to begin a number.
+    int actionAfterSign(char c) {
+        return compute(c, false);
+    }
+
+    char closequote(char c) {
+        if (c < 256 && closing[c] != 0) return closing[c];
+        return closequotes.charAt(openquotes.indexOf(c));
+    }
+
+    // The quote delimiters, or empty strings if quotes are not tokenized.
+    public String openquotes() { return testquotes ? openquotes : ""; }
+
+    public String closequotes() { return testquotes ? closequotes : ""; }
+
+    public boolean trackPosition() { return trackPosition; }
+
+    private int compute(char c, boolean signs) {
+        int charClass = charClasses.classify(c);
+        if ((skipSpaces || tokenizeSpaces) && (charClass & CharClassTable.SPACE) != 0)
+            return skipSpaces ? SKIP : SPACE;
+        if (tokenizeNumbers && (charClass & CharClassTable.DIGIT) != 0) return DIGIT;
+        if (signs && tokenizeNumbers && ((c == '-' || c == '+') && signedNumbers || c == '.' && decimalNumbers))
+            return SIGN;
+        if (tokenizeWords && (charClass & CharClassTable.WORD_START) != 0) return WORD;
+        if (testquotes && (charClass & CharClassTable.QUOTE) != 0) return QUOTE;
+        return CHAR;
+    }
+}
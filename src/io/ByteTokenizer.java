@@ -0,0 +1,95 @@
+package io;
+
+import classes.Tokenizer;
+import classes.AbstractTokenizer;
+import java.io.*;
+import java.nio.ByteBuffer;
+
+public class ByteTokenizer extends AbstractTokenizer {
+    InputStream in;
+    ByteBuffer bytes;
+    boolean endOfInput;
+    Utf8Decoder utf8 = new Utf8Decoder();
+
+    public ByteTokenizer(InputStream in) { this(in, 16*1024); }
+    public ByteTokenizer(InputStream in, int bufferSize) {
+        this.in = in;
+        this.bytes = ByteBuffer.allocate(bufferSize);
+        bytes.limit(0);
+        maximumTokenLength(bufferSize);
+    }
+
+    public ByteTokenizer(byte[] bytes) { this(ByteBuffer.wrap(bytes)); }
+    public ByteTokenizer(byte[] bytes, int offset, int length) { this(ByteBuffer.wrap(bytes, offset, length)); }
+    public ByteTokenizer(ByteBuffer bytes) {
+        this.bytes = bytes.slice();
+        this.endOfInput = true;
+    }
+
+    public void close() throws IOException {
+        if (in != null) in.close();
+    }
+
+    protected void createBuffer(int bufferSize) {
+        assert text == null;
+        this.text = new char[bufferSize];
+        this.numChars = 0;
+    }
+
+    protected boolean fillBuffer() throws IOException {
+        assert text != null && 0 <= tokenStart && tokenStart <= tokenEnd &&
+                tokenEnd <= p && p <= numChars && numChars <= text.length;
+
+        if (tokenStart > 0) {
+            System.arraycopy(text, tokenStart, text, 0, numChars - tokenStart);
+            textOffset += tokenStart;
+            tokenEnd -= tokenStart;
+            p -= tokenStart;
+            numChars -= tokenStart;
+            tokenStart = 0;
+        }
+        if (numChars == text.length) return true;
+
+        // Decodes as MappedFileTokenizer does, copying runs of ASCII straight into the buffer and
+        // only decoding multi-byte sequences. A sequence cut short by the end of the bytes read
+        // so far waits for the next read.
+        for (;;) {
+            int n = utf8.decode(bytes, bytes.position(), bytes.limit(), endOfInput, text, numChars, text.length);
+            bytes.position(utf8.position);
+            if (n > numChars) {
+                numChars = n;
+                return true;
+            }
+            if (bytes.hasRemaining() && text.length - numChars < 2) return true;
+            if (endOfInput) return false;
+            read();
+        }
+    }
+
+    // Reads more bytes from the stream, keeping any sequence that the last read cut short.
+    private void read() throws IOException {
+        bytes.compact();
+        int numread = in.read(bytes.array(), bytes.position(), bytes.remaining());
+        if (numread == -1) endOfInput = true;
+        else bytes.position(bytes.position() + numread);
+        bytes.flip();
+    }
+
+    public static class Test {
+        public static void main(String[] args) throws IOException {
+            for (int i = 0; i < 2; i ++) {
+                Tokenizer t;
+                if (i == 0) t = new ReaderTokenizer(new FileReader(args[0]));
+                else t = new ByteTokenizer(new FileInputStream(args[0]));
+                t.tokenizeWords(true).tokenizeNumbers(true).skipSpaces(true);
+
+                int tokens = 0;
+                long start = System.currentTimeMillis();
+                while(t.next() != Tokenizer.EOF) tokens ++;
+                long elapsed = System.currentTimeMillis() - start;
+
+                System.out.println(t.getClass().getName() + ": " + tokens + " tokens in " + elapsed + "ms");
+            }
+        }
+    }
+}
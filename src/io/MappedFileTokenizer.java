@@ -0,0 +1,113 @@
+package io;
+
+import classes.Tokenizer;
+import classes.AbstractTokenizer;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class MappedFileTokenizer extends AbstractTokenizer {
+
+    static final int MAP_SIZE = 64*1024*1024;
+
+    FileChannel channel;
+    MappedByteBuffer bytes;
+    long mapStart, mapEnd;
+    long position, end;
+    Utf8Decoder utf8 = new Utf8Decoder();
+
+    public MappedFileTokenizer(File file) throws IOException { this(file, 64*1024); }
+    public MappedFileTokenizer(File file, int bufferSize) throws IOException {
+        this(file, 0, -1, bufferSize);
+    }
+    public MappedFileTokenizer(File file, long start, long end, int bufferSize) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        this.position = start;
+        this.end = end < 0 ? channel.size() : Math.min(end, channel.size());
+        maximumTokenLength(bufferSize);
+    }
+
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+        channel = null;
+        bytes = null;
+    }
+
+    char[] buffer() { return text; }
+    int bufferLength() { return numChars; }
+    int tokenStart() { return tokenStart; }
+    int tokenEnd() { return tokenEnd; }
+
+    protected void createBuffer(int bufferSize) {
+        assert text == null;
+        this.text = new char[bufferSize];
+        this.numChars = 0;
+    }
+
+    protected boolean fillBuffer() throws IOException {
+        assert text != null && 0 <= tokenStart && tokenStart <= tokenEnd &&
+                tokenEnd <= p && p <= numChars && numChars <= text.length;
+
+        if (channel == null) throw new IOException("already closed");
+        if (position >= end) return false;
+
+        if (tokenStart > 0) {
+            System.arraycopy(text, tokenStart, text, 0, numChars - tokenStart);
+            textOffset += tokenStart;
+            tokenEnd -= tokenStart;
+            p -= tokenStart;
+            numChars -= tokenStart;
+            tokenStart = 0;
+        }
+        if (text.length - numChars < 2) {
+            char[] newtext = new char[text.length * 2];
+            System.arraycopy(text, 0, newtext, 0, numChars);
+            text = newtext;
+        }
+
+        numChars += decode();
+        return true;
+    }
+
+    private int decode() throws IOException {
+        char[] text = this.text;
+        int n = numChars, limit = text.length;
+
+        // A sequence cut short by the end of a mapping is decoded after mapping from its start.
+        while (n < limit && position < end) {
+            if (position + 4 > mapEnd && mapEnd < end) map(position);
+            int i = (int) (position - mapStart), max = (int) (mapEnd - mapStart);
+            n = utf8.decode(bytes, i, max, mapEnd == end, text, n, limit);
+            position = mapStart + utf8.position;
+            if (utf8.position == i && n >= limit - 1) break;
+        }
+
+        return n - numChars;
+    }
+
+    private void map(long start) throws IOException {
+        mapStart = start;
+        mapEnd = Math.min(end, start + MAP_SIZE);
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+    }
+
+    public static class Test {
+        public static void main(String[] args) throws IOException {
+            MappedFileTokenizer t = new MappedFileTokenizer(new File(args[0]));
+            t.tokenizeWords(true).tokenizeNumbers(true).skipSpaces(true);
+
+            int tokens = 0, words = 0, numbers = 0;
+            long start = System.currentTimeMillis();
+            while(t.next() != Tokenizer.EOF) {
+                tokens ++;
+                if (t.tokenType() == Tokenizer.WORD) words ++;
+                else if (t.tokenType() == Tokenizer.NUMBER) numbers ++;
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            t.close();
+
+            System.out.println(tokens + " tokens, " + words + " words, " + numbers + " numbers in " +
+                               elapsed + "ms");
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package io;
+
+import classes.CsvReader;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads a CSV or TSV file into columns by splitting it into chunks of whole records, reading
+ * each chunk into columns of its own in a ForkJoinPool, and appending those to the caller's
+ * columns in order. Only a few chunks are read ahead of the one being appended, so the
+ * chunks' columns take little memory beside the caller's, however large the file. Finding the record boundaries means knowing which newlines are inside
+ * quotes, so the file is scanned once for quotes before the chunks are read, as
+ * ParallelTokenizer does for its quotes.
+ */
+public class ParallelCsvReader {
+
+    static final int MAP_SIZE = 64*1024*1024;
+
+    FileChannel channel;
+    long fileSize;
+    MappedByteBuffer bytes;
+    long mapStart, mapEnd;
+
+    ParallelCsvReader(File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        fileSize = channel.size();
+    }
+
+    public static int read(File file, char separator, boolean header, CsvReader.Column[] columns)
+        throws IOException
+    {
+        return read(file, separator, header, columns, 8*1024*1024, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads the records of <tt>file</tt> into <tt>columns</tt>, as {@link CsvReader#readColumns} does.
+     * @param header whether to skip the first record.
+     * @return the number of records read.
+     */
+    public static int read(File file, char separator, boolean header, CsvReader.Column[] columns,
+                           int chunkSize, ForkJoinPool pool) throws IOException
+    {
+        if (chunkSize < 1) throw new IllegalArgumentException();
+        ParallelCsvReader reader = new ParallelCsvReader(file);
+        LinkedList<Chunk> pending = new LinkedList<Chunk>();
+        int ahead = 2 * pool.getParallelism();
+        int records = 0;
+        try {
+            long start = 0;
+            while (start < reader.fileSize || !pending.isEmpty()) {
+                while (pending.size() < ahead && start < reader.fileSize) {
+                    // A separator outside ASCII can't be found by its bytes, so the file is
+                    // one chunk.
+                    long end = separator > 127 ? reader.fileSize : reader.split(start, chunkSize, separator);
+                    Chunk chunk = new Chunk(file, separator, header && start == 0, columns, start, end);
+                    pool.execute(chunk);
+                    pending.addLast(chunk);
+                    start = end;
+                }
+                Chunk chunk = pending.removeFirst();
+                chunk.join();
+                if (chunk.error != null) throw chunk.error;
+                for (int c = 0; c < columns.length; c ++)
+                    if (columns[c] != null) columns[c].addAll(chunk.columns[c]);
+                records += chunk.records;
+            }
+        }
+        finally {
+            reader.channel.close();
+            while (!pending.isEmpty()) pending.removeFirst().quietlyJoin();
+        }
+        return records;
+    }
+
+    // Returns the position just after the first record-ending newline at least chunkSize bytes
+    // after start, which must be the start of a record. As in CsvReader, a quote opens a quoted
+    // field only as the first character of a field, a doubled quote inside it stands for a
+    // quote, and any other quote is an ordinary character.
+    private long split(long start, int chunkSize, char separator) throws IOException {
+        long target = start + chunkSize;
+        if (target >= fileSize) return fileSize;
+        boolean fieldStart = true, quoted = false;
+        for (long position = start; position < fileSize; position ++) {
+            if (position - start > Integer.MAX_VALUE - 2)
+                throw new IOException("no record boundary within " + (Integer.MAX_VALUE - 2) + " bytes of " + start);
+            int b = byteAt(position);
+            if (quoted) {
+                if (b == '"') {
+                    if (position + 1 < fileSize && byteAt(position + 1) == '"') position ++;
+                    else quoted = false;
+                }
+            }
+            else if (b == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            }
+            else if (b == '\n') {
+                if (position >= target) return position + 1;
+                fieldStart = true;
+            }
+            else fieldStart = b == separator || b == '\r';
+        }
+        return fileSize;
+    }
+
+    private int byteAt(long position) throws IOException {
+        if (position < mapStart || position >= mapEnd) {
+            mapStart = position;
+            mapEnd = Math.min(fileSize, position + MAP_SIZE);
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        }
+        return bytes.get((int) (position - mapStart));
+    }
+
+    static class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        File file;
+        char separator;
+        boolean header;
+        CsvReader.Column[] columns;
+        long start, end;
+        int records;
+        IOException error;
+
+        Chunk(File file, char separator, boolean header, CsvReader.Column[] prototypes, long start, long end) {
+            this.file = file;
+            this.separator = separator;
+            this.header = header;
+            this.start = start;
+            this.end = end;
+            columns = new CsvReader.Column[prototypes.length];
+            for (int i = 0; i < columns.length; i ++)
+                if (prototypes[i] != null) columns[i] = prototypes[i].newColumn();
+        }
+
+        protected void compute() {
+            try {
+                MappedFileTokenizer t = new MappedFileTokenizer(file, start, end, 64*1024);
+                try {
+                    CsvReader reader = new CsvReader(t, separator);
+                    if (header) reader.nextRecord();
+                    records = reader.readColumns(columns);
+                }
+                finally {
+                    t.close();
+                }
+            }
+            catch (IOException e) { error = e; }
+        }
+    }
+
+    public static class Test {
+        public static void main(String[] args) throws IOException {
+            checkSmallFiles();
+            if (args.length == 0) return;
+
+            File file = new File(args[0]);
+            String kinds = args[1];
+            char separator = args.length > 2 ? args[2].charAt(0) : ',';
+
+            for (int round = 0; round < 3; round ++) {
+                CsvReader.Column[] sequential = columns(kinds), parallel = columns(kinds);
+
+                long start = System.currentTimeMillis();
+                MappedFileTokenizer t = new MappedFileTokenizer(file);
+                int records = new CsvReader(t, separator).readColumns(sequential);
+                t.close();
+                long elapsed = System.currentTimeMillis() - start;
+                System.out.println("CsvReader: " + records + " records in " + elapsed + "ms");
+
+                start = System.currentTimeMillis();
+                int parallelRecords = read(file, separator, false, parallel);
+                elapsed = System.currentTimeMillis() - start;
+                System.out.println("ParallelCsvReader: " + parallelRecords + " records in " + elapsed + "ms");
+                compare(sequential, records, parallel, parallelRecords);
+            }
+        }
+
+        // Reads small files of well-formed and malformed records in one-byte chunks, and
+        // compares the columns with CsvReader's.
+        static void checkSmallFiles() throws IOException {
+            String[] texts = { "a,b\n\"c\nd\",e\n", "a\"b\nc,\"d\n", "\"a\"b\"\nc\n", "a,\"\"\"\n\"\n", "a\r\"b\nc\"\r\nd" };
+            java.util.Random random = new java.util.Random(42);
+            File file = File.createTempFile("csv", ".txt");
+            try {
+                for (int i = 0; i < 5000; i ++) {
+                    String text;
+                    if (i < texts.length) text = texts[i];
+                    else {
+                        StringBuffer b = new StringBuffer();
+                        for (int n = random.nextInt(40); n > 0; n --) b.append("ab,\"\"\n\r".charAt(random.nextInt(7)));
+                        text = b.toString();
+                    }
+                    Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                    out.write(text);
+                    out.close();
+
+                    CsvReader.Column[] sequential = columns("sss"), parallel = columns("sss");
+                    MappedFileTokenizer t = new MappedFileTokenizer(file);
+                    int records = new CsvReader(t).readColumns(sequential);
+                    t.close();
+                    int parallelRecords = read(file, ',', false, parallel, 1, ForkJoinPool.commonPool());
+                    compare(sequential, records, parallel, parallelRecords);
+                }
+            }
+            finally {
+                file.delete();
+            }
+            System.out.println("small files match CsvReader");
+        }
+
+        static void compare(CsvReader.Column[] sequential, int records, CsvReader.Column[] parallel, int parallelRecords) {
+            if (records != parallelRecords)
+                throw new AssertionError(parallelRecords + " records instead of " + records);
+            for (int c = 0; c < sequential.length; c ++) {
+                if (sequential[c] == null) continue;
+                for (int i = 0; i < records; i ++)
+                    if (!value(sequential[c], i).equals(value(parallel[c], i)))
+                        throw new AssertionError("column " + c + " differs at record " + i);
+            }
+        }
+
+        // i, l, d and s for int, long, double and text columns, and - to skip a column.
+        static CsvReader.Column[] columns(String kinds) {
+            CsvReader.Column[] columns = new CsvReader.Column[kinds.length()];
+            for (int i = 0; i < columns.length; i ++) {
+                switch (kinds.charAt(i)) {
+                case 'i': columns[i] = new CsvReader.IntColumn(); break;
+                case 'l': columns[i] = new CsvReader.LongColumn(); break;
+                case 'd': columns[i] = new CsvReader.DoubleColumn(); break;
+                case 's': columns[i] = new CsvReader.TextColumn(); break;
+                }
+            }
+            return columns;
+        }
+
+        static Object value(CsvReader.Column column, int i) {
+            if (column instanceof CsvReader.IntColumn) return Integer.valueOf(((CsvReader.IntColumn) column).get(i));
+            if (column instanceof CsvReader.LongColumn) return Long.valueOf(((CsvReader.LongColumn) column).get(i));
+            if (column instanceof CsvReader.DoubleColumn) return Double.valueOf(((CsvReader.DoubleColumn) column).get(i));
+            return ((CsvReader.TextColumn) column).get(i);
+        }
+    }
+}
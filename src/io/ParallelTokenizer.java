@@ -0,0 +1,456 @@
+package io;
+
+import classes.Tokenizer;
+import classes.AbstractTokenizer;
+import classes.IntList;
+import classes.TokenizerConfiguration;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelTokenizer extends AbstractTokenizer {
+
+    static final int MAP_SIZE = 64*1024*1024;
+
+    File file;
+    FileChannel channel;
+    long fileSize;
+    int chunkSize;
+    ForkJoinPool pool;
+
+    LinkedList<Chunk> pending = new LinkedList<Chunk>();
+    long splitPosition = 0;
+    long scanPosition = 0;
+    int closequote = -1;
+    MappedByteBuffer bytes;
+    long mapStart, mapEnd;
+
+    Chunk chunk;
+    int index;
+    boolean sequential;
+    int type = BOF;
+    long lineOffset = 0;
+
+    public ParallelTokenizer(File file) throws IOException {
+        this(file, 8*1024*1024, ForkJoinPool.commonPool());
+    }
+    public ParallelTokenizer(File file, int chunkSize, ForkJoinPool pool) throws IOException {
+        if (chunkSize < 1) throw new IllegalArgumentException();
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+        channel = new RandomAccessFile(file, "r").getChannel();
+        fileSize = channel.size();
+    }
+
+    public void close() throws IOException {
+        while (!pending.isEmpty()) pending.removeFirst().quietlyJoin();
+        if (channel != null) channel.close();
+        channel = null;
+        bytes = null;
+    }
+
+    public Tokenizer quotes(String openquotes, String closequotes) {
+        super.quotes(openquotes, closequotes);
+        checkQuotes(openquotes, closequotes);
+        return this;
+    }
+
+    public Tokenizer configure(TokenizerConfiguration configuration) {
+        checkQuotes(configuration.openquotes(), configuration.closequotes());
+        return super.configure(configuration);
+    }
+
+    // split() finds quotes by their bytes, so they must be single-byte characters.
+    private static void checkQuotes(String openquotes, String closequotes) {
+        for (int i = 0; i < openquotes.length(); i ++)
+            if (openquotes.charAt(i) > 127 || closequotes.charAt(i) > 127)
+                throw new IllegalArgumentException("quote characters must be ASCII");
+    }
+
+    public int tokenType() { return sequential ? super.tokenType() : type; }
+
+    public int tokenKeyword() {
+        if (sequential) return super.tokenKeyword();
+        if (type == KEYWORD) return chunk.keywords.get(index - 1);
+        else return -1;
+    }
+
+    public int tokenLine() {
+        if (sequential) return super.tokenLine();
+        if (type != BOF && type != EOF && chunk.configuration.trackPosition() && tokenStart < numChars)
+            return (int) (chunk.lines.get(index - 1) + lineOffset);
+        else return 0;
+    }
+
+    public int tokenColumn() {
+        if (sequential) return super.tokenColumn();
+        if (type != BOF && type != EOF && chunk.configuration.trackPosition() && tokenStart < numChars)
+            return chunk.columns.get(index - 1);
+        else return 0;
+    }
+
+    public int next() throws IOException {
+        if (sequential) return super.next();
+        if (type == EOF) return EOF;
+        while (chunk == null || index >= chunk.types.size()) {
+            if (!nextChunk()) {
+                tokenStart = tokenEnd = numChars;
+                return type = EOF;
+            }
+        }
+        type = chunk.types.get(index);
+        tokenStart = chunk.starts.get(index);
+        tokenEnd = chunk.ends.get(index);
+        index ++;
+        return type;
+    }
+
+    public int nextBatch(int[] types, int[] starts, int[] ends, int max) throws IOException {
+        if (sequential) return super.nextBatch(types, starts, ends, max);
+        if (max < 0 || max > types.length || max > starts.length || max > ends.length)
+            throw new IndexOutOfBoundsException(String.valueOf(max));
+        int n = 0;
+        while (n < max && next() != EOF) {
+            long offset = textOffset + tokenStart;
+            types[n] = type;
+            starts[n] = (int) offset;
+            ends[n] = (int) (offset + tokenEnd - tokenStart);
+            n ++;
+        }
+        return n;
+    }
+
+    public int nextChar() throws IOException {
+        sequential();
+        return super.nextChar();
+    }
+
+    public int scan(char delimiter, boolean extendCurrentToken, boolean includeDelimiter, boolean skipDelimiter)
+        throws IOException
+    {
+        sequential();
+        return super.scan(delimiter, extendCurrentToken, includeDelimiter, skipDelimiter);
+    }
+
+    public int scan(String delimiter, boolean matchAll, boolean extendCurrentToken, boolean includeDelimiter,
+                    boolean skipDelimiter) throws IOException
+    {
+        sequential();
+        return super.scan(delimiter, matchAll, extendCurrentToken, includeDelimiter, skipDelimiter);
+    }
+
+    // nextChar() and scan() can stop between the tokens of a chunk, so from the first call to
+    // either on, the rest of the file is tokenized here, from the text of chunks that are only
+    // decoded in parallel.
+    private void sequential() {
+        if (sequential) return;
+        sequential = true;
+        if (text == null) return;
+        // Only a quote's closing delimiter lies between the end of a token and the next.
+        p = tokenEnd;
+        if (type >= 0 && p < numChars && chunk.configuration.openquotes().indexOf(type) != -1) p ++;
+        int line = (int) lineOffset + 1, column = tokenStart + 1;
+        for (int i = 0; i < tokenStart; i ++) {
+            if (text[i] == '\n') {
+                line ++;
+                column = tokenStart - i;
+            }
+        }
+        resume(line, column);
+    }
+
+    protected void createBuffer(int bufferSize) {
+        text = new char[0];
+        numChars = 0;
+    }
+
+    // Appends the text of the next chunk, keeping the characters from tokenStart on.
+    protected boolean fillBuffer() throws IOException {
+        Chunk next = take();
+        if (next == null) return false;
+        if (tokenStart > 0) {
+            System.arraycopy(text, tokenStart, text, 0, numChars - tokenStart);
+            textOffset += tokenStart;
+            tokenEnd -= tokenStart;
+            p -= tokenStart;
+            numChars -= tokenStart;
+            tokenStart = 0;
+        }
+        if (text.length - numChars < next.numChars) {
+            char[] newtext = new char[numChars + next.numChars];
+            System.arraycopy(text, 0, newtext, 0, numChars);
+            text = newtext;
+        }
+        System.arraycopy(next.text, 0, text, numChars, next.numChars);
+        numChars += next.numChars;
+        return true;
+    }
+
+    private boolean nextChunk() throws IOException {
+        Chunk next = take();
+        if (next == null) return false;
+
+        if (chunk != null) {
+            textOffset += chunk.numChars;
+            lineOffset += chunk.newlines;
+        }
+        chunk = next;
+        text = chunk.text;
+        numChars = chunk.numChars;
+        tokenStart = tokenEnd = 0;
+        index = 0;
+        return true;
+    }
+
+    // Returns the next chunk once it is read, or null at the end of the file, after starting
+    // more chunks so that a number of them are read ahead.
+    private Chunk take() throws IOException {
+        if (channel == null) throw new IOException("already closed");
+        int ahead = 2 * pool.getParallelism();
+        while (pending.size() < ahead && splitPosition < fileSize) {
+            long start = splitPosition;
+            splitPosition = split(start);
+            Chunk next = new Chunk(start, splitPosition, !sequential);
+            pool.execute(next);
+            pending.addLast(next);
+        }
+        if (pending.isEmpty()) return null;
+
+        Chunk next = pending.removeFirst();
+        next.join();
+        if (next.error != null) throw next.error;
+        return next;
+    }
+
+    // Chunks end just after a newline that is followed by a non-whitespace ASCII character and
+    // is not inside a quote. As the quotes() documentation requires, this assumes that quote
+    // delimiters and newlines are never part of number or word tokens.
+    private long split(long start) throws IOException {
+        long target = start + chunkSize;
+        if (target >= fileSize) return fileSize;
+        TokenizerConfiguration configuration = compile();
+        String opening = configuration.openquotes(), closing = configuration.closequotes();
+        if (opening.length() == 0) scanPosition = target;
+
+        int previous = scanPosition > 0 ? byteAt(scanPosition - 1) : -1;
+        for (; scanPosition < fileSize; scanPosition ++) {
+            if (scanPosition - start > Integer.MAX_VALUE - 2)
+                throw new IOException("no split point within " + (Integer.MAX_VALUE - 2) + " bytes of " + start);
+            int b = byteAt(scanPosition);
+            if (closequote != -1) {
+                if (b == closequote) closequote = -1;
+            }
+            else if (scanPosition >= target && previous == '\n' &&
+                     b < 128 && !Character.isWhitespace((char) b)) {
+                return scanPosition;
+            }
+            else {
+                int quoteindex = opening.indexOf(b);
+                if (quoteindex != -1) closequote = closing.charAt(quoteindex);
+            }
+            previous = b;
+        }
+        return fileSize;
+    }
+
+    private int byteAt(long position) throws IOException {
+        if (position < mapStart || position >= mapEnd) {
+            mapStart = position;
+            mapEnd = Math.min(fileSize, position + MAP_SIZE);
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        }
+        return bytes.get((int) (position - mapStart)) & 0xFF;
+    }
+
+    class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        long start, end;
+        TokenizerConfiguration configuration;
+        boolean tokenize;
+        IntList types, starts, ends, keywords, lines, columns;
+        char[] text;
+        int numChars;
+        int newlines;
+        IOException error;
+
+        Chunk(long start, long end, boolean tokenize) {
+            this.start = start;
+            this.end = end;
+            this.tokenize = tokenize;
+            this.configuration = compile();
+        }
+
+        protected void compute() {
+            int estimate = (int) Math.max(16, (end - start) / 4);
+            types = new IntList(estimate);
+            starts = new IntList(estimate);
+            ends = new IntList(estimate);
+            keywords = new IntList(estimate);
+            boolean positions = configuration.trackPosition();
+            lines = new IntList(positions ? estimate : 0);
+            columns = new IntList(positions ? estimate : 0);
+            try {
+                MappedFileTokenizer t = new MappedFileTokenizer(file, start, end, (int) (end - start) + 2);
+                try {
+                    t.configure(configuration);
+                    // The buffer holds the whole chunk, so a token's place in it is its offset
+                    // in the chunk, even for the empty token of a quote left open at the end of
+                    // input, which has no tokenOffset(). The first nextChar() decodes all of it.
+                    if (!tokenize) t.nextChar();
+                    int type;
+                    while (tokenize && (type = t.next()) != EOF) {
+                        types.add(type);
+                        starts.add(t.tokenStart());
+                        ends.add(t.tokenEnd());
+                        keywords.add(t.tokenKeyword());
+                        if (positions) {
+                            lines.add(t.tokenLine());
+                            columns.add(t.tokenColumn());
+                        }
+                    }
+                }
+                finally {
+                    t.close();
+                }
+                text = t.buffer();
+                numChars = t.bufferLength();
+                for (int i = 0; i < numChars; i ++) if (text[i] == '\n') newlines ++;
+            }
+            catch (IOException e) { error = e; }
+        }
+    }
+
+    public static class Test {
+        public static void main(String[] args) throws IOException {
+            checkSmallFiles();
+            checkCopiedConfiguration();
+            if (args.length == 0) return;
+
+            ParallelTokenizer t = new ParallelTokenizer(new File(args[0]));
+            t.tokenizeWords(true).tokenizeNumbers(true).skipSpaces(true);
+
+            int tokens = 0, words = 0, numbers = 0;
+            long start = System.currentTimeMillis();
+            while(t.next() != Tokenizer.EOF) {
+                tokens ++;
+                if (t.tokenType() == Tokenizer.WORD) words ++;
+                else if (t.tokenType() == Tokenizer.NUMBER) numbers ++;
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            t.close();
+
+            System.out.println(tokens + " tokens, " + words + " words, " + numbers + " numbers in " +
+                               elapsed + "ms");
+        }
+
+        // Tokenizes small files in one-byte chunks, including files that end inside a quote,
+        // and compares the tokens with a MappedFileTokenizer's, first reading each file with
+        // next() alone and then with nextChar() and scan() calls among the next() calls.
+        static void checkSmallFiles() throws IOException {
+            String[] texts = { "ab \"", "\"", "ab\n\"cd\nef", "ab\ncd \"x\"\n'y\n", "1 2\n\n3 'q" };
+            java.util.Random random = new java.util.Random(42);
+            File file = File.createTempFile("parallel", ".txt");
+            try {
+                for (int i = 0; i < 2000; i ++) {
+                    String text;
+                    if (i < texts.length) text = texts[i];
+                    else {
+                        StringBuffer b = new StringBuffer();
+                        for (int n = random.nextInt(30); n > 0; n --) b.append("ab1 \n\"'".charAt(random.nextInt(7)));
+                        text = b.toString();
+                    }
+                    Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                    out.write(text);
+                    out.close();
+
+                    compare(file, text, null);
+                    compare(file, text, random);
+                }
+            }
+            finally {
+                file.delete();
+            }
+            System.out.println("small files match MappedFileTokenizer");
+        }
+
+        static void compare(File file, String text, java.util.Random random) throws IOException {
+            ParallelTokenizer t = new ParallelTokenizer(file, 1, ForkJoinPool.commonPool());
+            MappedFileTokenizer expected = new MappedFileTokenizer(file);
+            t.tokenizeWords(true).tokenizeNumbers(true).skipSpaces(true).quotes("\"'", "\"\n").trackPosition(true);
+            expected.copyConfiguration(t);
+            int type;
+            do {
+                int call = random == null ? 3 : random.nextInt(10);
+                boolean extend = call < 3 && random.nextBoolean(), include = call < 3 && random.nextBoolean();
+                if (call == 0) {
+                    type = t.nextChar();
+                    if (type != expected.nextChar()) type = BOF;
+                }
+                else if (call == 1) {
+                    type = t.scan('\n', extend, include, !include);
+                    if (type != expected.scan('\n', extend, include, !include)) type = BOF;
+                }
+                else if (call == 2) {
+                    type = t.scan("1'", false, extend, include, !include);
+                    if (type != expected.scan("1'", false, extend, include, !include)) type = BOF;
+                }
+                else {
+                    type = t.next();
+                    if (type != expected.next()) type = BOF;
+                }
+                if (type == BOF || t.tokenType() != expected.tokenType() ||
+                    !String.valueOf(t.tokenText()).equals(String.valueOf(expected.tokenText())) ||
+                    t.tokenOffset() != expected.tokenOffset() || t.tokenLine() != expected.tokenLine() ||
+                    t.tokenColumn() != expected.tokenColumn())
+                    throw new AssertionError("tokens differ for \"" + text + "\"");
+            } while (type != EOF);
+            t.close();
+            expected.close();
+        }
+
+        // Configures a tokenizer with copyConfiguration(), which must reach split() as
+        // quotes() and trackPosition() do.
+        static void checkCopiedConfiguration() throws IOException {
+            String text = "a 'x\nb\nc\nd\ne' f\ng h\n";
+            File file = File.createTempFile("parallel", ".txt");
+            try {
+                Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                out.write(text);
+                out.close();
+
+                classes.CharSequenceTokenizer model = new classes.CharSequenceTokenizer(text);
+                model.tokenizeWords(true).skipSpaces(true).quotes("'", "'").trackPosition(true);
+                ParallelTokenizer t = new ParallelTokenizer(file, 2, ForkJoinPool.commonPool());
+                t.copyConfiguration(model);
+                int type;
+                do {
+                    type = t.next();
+                    if (type != model.next() || !String.valueOf(t.tokenText()).equals(String.valueOf(model.tokenText())) ||
+                        t.tokenLine() != model.tokenLine() || t.tokenColumn() != model.tokenColumn())
+                        throw new AssertionError("tokens differ for a copied configuration");
+                } while (type != EOF);
+                t.close();
+
+                model.quotes("\u00ab", "\u00bb");
+                t = new ParallelTokenizer(file, 2, ForkJoinPool.commonPool());
+                try {
+                    t.copyConfiguration(model);
+                    throw new AssertionError("non-ASCII quotes accepted");
+                }
+                catch (IllegalArgumentException e) { }
+                finally {
+                    t.close();
+                }
+            }
+            finally {
+                file.delete();
+            }
+            System.out.println("copied configuration matches CharSequenceTokenizer");
+        }
+    }
+}
@@ -3,20 +3,54 @@ package io;
 import classes.Tokenizer;
 import classes.AbstractTokenizer;
 import java.io.*;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class ReaderTokenizer extends AbstractTokenizer {
     Reader in;
+    int prefetchBuffers;
+    Prefetcher prefetcher;
+    Chunk chunk;
+    char[] buffer;
 
     public ReaderTokenizer(Reader in) { this(in, 16*1024); }
-    public ReaderTokenizer(Reader in, int bufferSize) {
+    public ReaderTokenizer(Reader in, int bufferSize) { this(in, bufferSize, 0); }
+    // With prefetchBuffers > 0, a daemon thread reads ahead into that many buffers. close()
+    // stops it; a tokenizer dropped without close() stops it when garbage collected.
+    public ReaderTokenizer(Reader in, int bufferSize, int prefetchBuffers) {
+        if (prefetchBuffers < 0) throw new IllegalArgumentException();
         this.in = in;
+        this.prefetchBuffers = prefetchBuffers;
         maximumTokenLength(bufferSize);
     }
 
+    public void close() throws IOException {
+        if (prefetcher != null) prefetcher.interrupt();
+        prefetcher = null;
+        in.close();
+    }
+
+    // Does not close the previous reader.
+    public Tokenizer reset(Reader in) {
+        if (prefetcher != null) prefetcher.interrupt();
+        prefetcher = null;
+        chunk = null;
+        reset();
+        this.in = in;
+        return this;
+    }
+
     protected void createBuffer(int bufferSize) {
         assert text == null;
-        this.text = new char[bufferSize];
+        if (buffer == null || buffer.length != bufferSize) buffer = new char[bufferSize];
+        this.text = buffer;
         this.numChars = 0;
+        if (prefetchBuffers > 0) {
+            prefetcher = new Prefetcher(this, in, bufferSize, prefetchBuffers);
+            prefetcher.start();
+        }
     }
 
     protected boolean fillBuffer() throws IOException {
@@ -25,13 +59,16 @@ public class ReaderTokenizer extends AbstractTokenizer {
 
         if (tokenStart > 0) {
             System.arraycopy(text, tokenStart, text, 0, numChars - tokenStart);
+            textOffset += tokenStart;
             tokenEnd -= tokenStart;
             p -= tokenStart;
             numChars -= tokenStart;
             tokenStart = 0;
         }
 
-        int numread = in.read(text, numChars, text.length - numChars);
+        int numread;
+        if (prefetcher != null) numread = readPrefetched(text, numChars, text.length - numChars);
+        else numread = in.read(text, numChars, text.length - numChars);
 
         if (numread == -1) return false;
 
@@ -39,6 +76,68 @@ public class ReaderTokenizer extends AbstractTokenizer {
         return true;
     }
 
+    private int readPrefetched(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (chunk == null) {
+            try { chunk = prefetcher.filled.take(); }
+            catch (InterruptedException e) { throw new InterruptedIOException(); }
+        }
+        if (chunk.error != null) throw chunk.error;
+        if (chunk.length == -1) return -1;
+
+        int n = Math.min(length, chunk.length - chunk.position);
+        System.arraycopy(chunk.chars, chunk.position, buffer, offset, n);
+        chunk.position += n;
+        if (chunk.position == chunk.length) {
+            prefetcher.empty.offer(chunk);
+            chunk = null;
+        }
+        return n;
+    }
+
+    static class Chunk {
+        char[] chars;
+        int position, length;
+        IOException error;
+
+        Chunk(int size) { chars = new char[size]; }
+    }
+
+    // Refers to its tokenizer weakly, so that a tokenizer that is dropped without close() can
+    // be collected, and stops once it has been.
+    static class Prefetcher extends Thread {
+        BlockingQueue<Chunk> empty, filled;
+        WeakReference<ReaderTokenizer> owner;
+        Reader in;
+
+        Prefetcher(ReaderTokenizer owner, Reader in, int bufferSize, int buffers) {
+            this.owner = new WeakReference<ReaderTokenizer>(owner);
+            this.in = in;
+            empty = new ArrayBlockingQueue<Chunk>(buffers + 1);
+            filled = new ArrayBlockingQueue<Chunk>(buffers + 1);
+            for (int i = 0; i < buffers; i ++) empty.add(new Chunk(bufferSize));
+            setDaemon(true);
+        }
+
+        public void run() {
+            try {
+                for (;;) {
+                    Chunk c = empty.poll(1, TimeUnit.SECONDS);
+                    if (c == null) {
+                        if (owner.get() == null) return;
+                        continue;
+                    }
+                    c.position = c.length = 0;
+                    try { c.length = in.read(c.chars, 0, c.chars.length); }
+                    catch (IOException e) { c.error = e; }
+                    filled.put(c);
+                    if (c.length == -1 || c.error != null) return;
+                }
+            }
+            catch (InterruptedException e) { }
+        }
+    }
+
     public static class Test {
         public static void main(String[] args) throws IOException {
             Reader in = new FileReader(args[0]);
@@ -0,0 +1,213 @@
+package io;
+
+import classes.Tokenizer;
+import classes.CharSequenceTokenizer;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+/**
+ * Measures tokenizer throughput and allocation on generated source code, log, prose and CSV
+ * corpora, for each of the configuration paths, alongside java.io.StreamTokenizer and
+ * java.util.StringTokenizer. Each result is the best of several rounds after warming up, and
+ * is printed as a tab-separated line so that runs from different releases can be compared.
+ * <pre>
+ *     java io.TokenizerBenchmark [charsPerCorpus [rounds]]
+ * </pre>
+ */
+public class TokenizerBenchmark {
+
+    static final String[] CORPORA = { "source", "logs", "prose", "csv" };
+    static final String[] TOKENIZERS = { "CharSequenceTokenizer", "ReaderTokenizer", "ByteTokenizer" };
+    static final String[] CONFIGURATIONS = { "chars", "skipSpaces", "words", "keywords", "quotes", "positions" };
+
+    static final String[] KEYWORDS = {
+        "abstract", "boolean", "break", "byte", "case", "catch", "char", "class", "continue",
+        "default", "do", "double", "else", "extends", "final", "finally", "float", "for", "if",
+        "implements", "import", "instanceof", "int", "interface", "long", "new", "package",
+        "private", "protected", "public", "return", "short", "static", "super", "switch",
+        "this", "throw", "throws", "try", "void", "while"
+    };
+    static final String[] IDENTIFIERS = {
+        "tokenStart", "text", "i", "numChars", "wordRecognizer", "buffer", "x", "result", "count",
+        "offset", "length", "value", "Tokenizer", "String", "IOException", "next", "size"
+    };
+    static final String[] WORDS = {
+        "the", "of", "and", "to", "a", "in", "that", "is", "was", "he", "for", "it", "with", "as",
+        "his", "on", "be", "at", "by", "had", "not", "are", "but", "from", "or", "have", "an",
+        "they", "which", "one", "you", "were", "her", "all", "she", "there", "would", "their",
+        "tokenizer", "character", "buffer", "throughput", "measurement", "release", "afternoon"
+    };
+    static final String[] LEVELS = { "INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR" };
+
+    static com.sun.management.ThreadMXBean threads;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4*1024*1024;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            if (!threads.isThreadAllocatedMemoryEnabled()) threads.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        System.out.println("corpus\ttokenizer\tconfiguration\tMchars/s\ttokens\tbytes/char");
+        for (int c = 0; c < CORPORA.length; c ++) {
+            String text = corpus(CORPORA[c], size);
+            byte[] bytes = text.getBytes("UTF-8");
+            for (int t = 0; t < TOKENIZERS.length; t ++)
+                for (int k = 0; k < CONFIGURATIONS.length; k ++)
+                    measure(CORPORA[c], text, bytes, t, k, rounds);
+            measure(CORPORA[c], text, bytes, TOKENIZERS.length, -1, rounds);
+            measure(CORPORA[c], text, bytes, TOKENIZERS.length + 1, -1, rounds);
+        }
+    }
+
+    static void measure(String corpus, String text, byte[] bytes, int tokenizer, int configuration, int rounds)
+        throws IOException
+    {
+        long best = Long.MAX_VALUE, allocated = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int round = -2; round < rounds; round ++) {
+            long memory = allocatedBytes();
+            long start = System.nanoTime();
+            tokens = run(text, bytes, tokenizer, configuration);
+            long elapsed = System.nanoTime() - start;
+            memory = allocatedBytes() - memory;
+            if (round >= 0) {
+                best = Math.min(best, elapsed);
+                allocated = Math.min(allocated, memory);
+            }
+        }
+
+        String name = tokenizer == TOKENIZERS.length ? "StreamTokenizer" :
+                      tokenizer == TOKENIZERS.length + 1 ? "StringTokenizer" : TOKENIZERS[tokenizer];
+        String config = configuration == -1 ? "default" : CONFIGURATIONS[configuration];
+        double throughput = text.length() * 1000.0 / best;
+        String alloc = threads == null ? "n/a" : format((double) allocated / text.length());
+        System.out.println(corpus + "\t" + name + "\t" + config + "\t" + format(throughput) + "\t" +
+                           tokens + "\t" + alloc);
+    }
+
+    static int run(String text, byte[] bytes, int tokenizer, int configuration) throws IOException {
+        int tokens = 0;
+        if (tokenizer == TOKENIZERS.length) {
+            StreamTokenizer t = new StreamTokenizer(new StringReader(text));
+            while (t.nextToken() != StreamTokenizer.TT_EOF) tokens ++;
+            return tokens;
+        }
+        if (tokenizer == TOKENIZERS.length + 1) {
+            StringTokenizer t = new StringTokenizer(text);
+            while (t.hasMoreTokens()) {
+                t.nextToken();
+                tokens ++;
+            }
+            return tokens;
+        }
+
+        Tokenizer t;
+        if (tokenizer == 0) t = new CharSequenceTokenizer(text);
+        else if (tokenizer == 1) t = new ReaderTokenizer(new StringReader(text));
+        else t = new ByteTokenizer(bytes);
+        configure(t, configuration);
+
+        if (configuration == CONFIGURATIONS.length - 1) {
+            long lines = 0;
+            while (t.next() != Tokenizer.EOF) {
+                lines += t.tokenLine() + t.tokenColumn();
+                tokens ++;
+            }
+            if (lines < 0) throw new AssertionError();
+        }
+        else while (t.next() != Tokenizer.EOF) tokens ++;
+        return tokens;
+    }
+
+    // Each configuration adds to the ones before it.
+    static void configure(Tokenizer t, int configuration) {
+        if (configuration >= 1) t.skipSpaces(true);
+        if (configuration >= 2) t.tokenizeWords(true).tokenizeNumbers(true);
+        if (configuration >= 3) t.keywords(KEYWORDS);
+        if (configuration >= 4) t.quotes("\"'", "\"'");
+        if (configuration >= 5) t.trackPosition(true);
+    }
+
+    static long allocatedBytes() {
+        if (threads == null) return 0;
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static String format(double d) {
+        return String.valueOf(Math.round(d * 100) / 100.0);
+    }
+
+    static String corpus(String kind, int size) {
+        Random random = new Random(42);
+        StringBuffer b = new StringBuffer(size + 256);
+        int line = 0;
+        while (b.length() < size) {
+            line ++;
+            if (kind.equals("source")) sourceLine(b, random);
+            else if (kind.equals("logs")) logLine(b, random, line);
+            else if (kind.equals("prose")) proseLine(b, random);
+            else csvLine(b, random, line);
+            b.append('\n');
+        }
+        b.setLength(size);
+        return b.toString();
+    }
+
+    static void sourceLine(StringBuffer b, Random random) {
+        int indent = random.nextInt(4) * 4;
+        for (int i = 0; i < indent; i ++) b.append(' ');
+        switch (random.nextInt(6)) {
+        case 0:
+            b.append("// ");
+            for (int i = random.nextInt(8); i >= 0; i --) b.append(pick(WORDS, random)).append(' ');
+            break;
+        case 1:
+            b.append(pick(KEYWORDS, random)).append(' ').append(pick(IDENTIFIERS, random)).append(" = \"")
+             .append(pick(WORDS, random)).append(' ').append(pick(WORDS, random)).append("\";");
+            break;
+        default:
+            b.append(pick(KEYWORDS, random)).append(" (").append(pick(IDENTIFIERS, random)).append(" < ")
+             .append(random.nextInt(1000)).append(") ").append(pick(IDENTIFIERS, random)).append('.')
+             .append(pick(IDENTIFIERS, random)).append("(").append(pick(IDENTIFIERS, random))
+             .append(", '").append((char) ('a' + random.nextInt(26))).append("');");
+        }
+    }
+
+    static void logLine(StringBuffer b, Random random, int line) {
+        b.append("2024-03-").append(10 + line / 100000 % 20).append(' ')
+         .append(10 + line / 3600 % 14).append(':').append(10 + line / 60 % 50).append(':')
+         .append(10 + line % 50).append(',').append(100 + random.nextInt(900)).append(' ')
+         .append(pick(LEVELS, random)).append(" [worker-").append(random.nextInt(16)).append("] ")
+         .append("io.Service - processed ").append(random.nextInt(10000)).append(" items in ")
+         .append(random.nextInt(500)).append(" ms for user=").append(pick(IDENTIFIERS, random))
+         .append(" status=\"").append(pick(WORDS, random)).append('"');
+    }
+
+    static void proseLine(StringBuffer b, Random random) {
+        for (int sentence = 1 + random.nextInt(3); sentence > 0; sentence --) {
+            String first = pick(WORDS, random);
+            b.append(Character.toUpperCase(first.charAt(0))).append(first.substring(1));
+            for (int i = 3 + random.nextInt(12); i > 0; i --) {
+                b.append(random.nextInt(8) == 0 ? ", " : " ").append(pick(WORDS, random));
+            }
+            b.append(random.nextInt(5) == 0 ? "? " : ". ");
+        }
+    }
+
+    static void csvLine(StringBuffer b, Random random, int line) {
+        b.append(line).append(',').append('"').append(pick(WORDS, random)).append(' ')
+         .append(pick(WORDS, random)).append('"').append(',').append(random.nextInt(100000)).append('.')
+         .append(random.nextInt(100)).append(',').append(pick(IDENTIFIERS, random)).append(',')
+         .append(random.nextInt(2) == 0 ? "true" : "false");
+    }
+
+    static String pick(String[] words, Random random) {
+        return words[random.nextInt(words.length)];
+    }
+}
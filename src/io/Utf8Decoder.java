@@ -0,0 +1,104 @@
+package io;
+
+import java.nio.ByteBuffer;
+
+// Decodes UTF-8 straight into a tokenizer's char buffer. Runs of ASCII are copied a byte at a
+// time with no further checks, and only the bytes of multi-byte sequences are decoded. A
+// malformed sequence becomes U+FFFD, as with the JDK's decoder.
+class Utf8Decoder {
+
+    // The index of the first byte not decoded by the last call to decode().
+    int position;
+
+    // Decodes bytes from index i up to max into text from index n up to limit, and returns the
+    // new n. If more bytes may follow max, a sequence cut short by max is left undecoded for
+    // the next call.
+    int decode(ByteBuffer bytes, int i, int max, boolean complete, char[] text, int n, int limit) {
+        if (bytes.hasArray()) return decode(bytes.array(), bytes.arrayOffset(), i, max, complete, text, n, limit);
+        int b;
+        for (;;) {
+            while (n < limit && i < max && (b = bytes.get(i)) >= 0) {
+                text[n++] = (char) b;
+                i ++;
+            }
+            // The byte at i begins a sequence, whose character may need two chars.
+            if (n >= limit - 1 || i >= max) break;
+
+            b = bytes.get(i) & 0xFF;
+            int needed = needed(b);
+            if (i + needed >= max && !complete) break;
+            int c = b & LEAD_MASKS[needed], min = minimum(b), max2 = maximum(b);
+            int j = 1;
+            for (; j <= needed && i + j < max; j ++) {
+                int cont = bytes.get(i + j) & 0xFF;
+                if (cont < min || cont > max2) break;
+                c = (c << 6) | (cont & 0x3F);
+                min = 0x80;
+                max2 = 0xBF;
+            }
+            n = store(c, needed, j, text, n);
+            i += j;
+        }
+        position = i;
+        return n;
+    }
+
+    private int decode(byte[] bytes, int offset, int i, int max, boolean complete, char[] text, int n, int limit) {
+        int b;
+        i += offset;
+        max += offset;
+        for (;;) {
+            while (n < limit && i < max && (b = bytes[i]) >= 0) {
+                text[n++] = (char) b;
+                i ++;
+            }
+            if (n >= limit - 1 || i >= max) break;
+
+            b = bytes[i] & 0xFF;
+            int needed = needed(b);
+            if (i + needed >= max && !complete) break;
+            int c = b & LEAD_MASKS[needed], min = minimum(b), max2 = maximum(b);
+            int j = 1;
+            for (; j <= needed && i + j < max; j ++) {
+                int cont = bytes[i + j] & 0xFF;
+                if (cont < min || cont > max2) break;
+                c = (c << 6) | (cont & 0x3F);
+                min = 0x80;
+                max2 = 0xBF;
+            }
+            n = store(c, needed, j, text, n);
+            i += j;
+        }
+        position = i - offset;
+        return n;
+    }
+
+    private static final int[] LEAD_MASKS = { 0, 0x1F, 0x0F, 0x07 };
+
+    // The number of continuation bytes that follow a lead byte, or 0 if it can't begin a
+    // sequence.
+    private static int needed(int b) {
+        if (b >= 0xC2 && b <= 0xDF) return 1;
+        if (b >= 0xE0 && b <= 0xEF) return 2;
+        if (b >= 0xF0 && b <= 0xF4) return 3;
+        return 0;
+    }
+
+    // The range of the second byte, which excludes overlong forms and values past U+10FFFF. A
+    // malformed sequence ends at the first byte out of range, except that an encoded surrogate
+    // is read whole, and becomes a single U+FFFD, as with the JDK's decoder.
+    private static int minimum(int b) { return b == 0xE0 ? 0xA0 : b == 0xF0 ? 0x90 : 0x80; }
+
+    private static int maximum(int b) { return b == 0xF4 ? 0x8F : 0xBF; }
+
+    // Stores the character decoded from a sequence of j bytes, or U+FFFD if it was malformed.
+    private static int store(int c, int needed, int j, char[] text, int n) {
+        if (needed == 0 || j <= needed || (c >= 0xD800 && c <= 0xDFFF)) text[n++] = '\uFFFD';
+        else if (c >= 0x10000) {
+            text[n++] = Character.highSurrogate(c);
+            text[n++] = Character.lowSurrogate(c);
+        }
+        else text[n++] = (char) c;
+        return n;
+    }
+}
@@ -0,0 +1,214 @@
+package thread;
+
+import classes.IntList;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A list of ints that many threads can append to at once. Where ThreadSafeIntList makes every
+ * thread take the same lock, this list gives each thread that appends a buffer of its own,
+ * which only that thread writes, so add() takes no lock and performs no atomic instruction:
+ * it stores the value and then publishes the buffer's new size with an ordered write.
+ * snapshot(), toArray() and drainTo() read each buffer's published size and copy the values
+ * up to it, so they never see part of an append, and they include every value whose add()
+ * returned before they were called. They merge the buffers one after another: the values one
+ * thread added keep their order, but values added by different threads may not be in the
+ * order they were added, and values added while a snapshot is being taken may or may not be
+ * in it. A buffer keeps the values that drainTo() has taken until its thread next grows it,
+ * and the buffer of a thread that has ended is dropped once it is drained.
+ */
+public class ConcurrentIntList {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final ThreadLocal<Buffer> local = new ThreadLocal<Buffer>();
+    private volatile Buffer[] buffers = new Buffer[0];
+
+    public void add(int value) {
+        Buffer buffer = local.get();
+        if (buffer == null) buffer = register();
+        long size = buffer.size;
+        Segment segment = buffer.segment;
+        int i = (int) (size - segment.base);
+        if (i == segment.data.length) {
+            segment = buffer.grow(1);
+            i = (int) (size - segment.base);
+        }
+        segment.data[i] = value;
+        Buffer.SIZE.lazySet(buffer, size + 1);
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        if (offset < 0 || length < 0 || length > values.length - offset)
+            throw new IndexOutOfBoundsException(offset + ", " + length);
+        Buffer buffer = local.get();
+        if (buffer == null) buffer = register();
+        long size = buffer.size;
+        Segment segment = buffer.segment;
+        int i = (int) (size - segment.base);
+        if (length > segment.data.length - i) {
+            segment = buffer.grow(length);
+            i = (int) (size - segment.base);
+        }
+        System.arraycopy(values, offset, segment.data, i, length);
+        Buffer.SIZE.lazySet(buffer, size + length);
+    }
+
+    // Without locking, so only an estimate while other threads are adding or draining.
+    public int size() {
+        Buffer[] buffers = this.buffers;
+        long size = 0;
+        for (int i = 0; i < buffers.length; i ++) size += buffers[i].size - buffers[i].taken;
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    public IntList snapshot() {
+        IntList list = new IntList(0);
+        copyTo(list, false);
+        return list;
+    }
+
+    public int[] toArray() { return snapshot().toArray(); }
+
+    /**
+     * Moves the values to the end of <tt>list</tt>. A value added while the list is being
+     * drained is either moved or left for the next drainTo(), never lost or moved twice.
+     * @return the number of values moved.
+     */
+    public int drainTo(IntList list) { return copyTo(list, true); }
+
+    public void clear() { copyTo(null, true); }
+
+    // Snapshots and drains exclude each other, so only one thread at a time advances taken.
+    private synchronized int copyTo(IntList list, boolean drain) {
+        Buffer[] buffers = this.buffers;
+        long[] sizes = new long[buffers.length];
+        long total = 0;
+        for (int i = 0; i < buffers.length; i ++) {
+            sizes[i] = buffers[i].size;
+            total += sizes[i] - buffers[i].taken;
+        }
+        if (list != null && list.size() + total > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("too large for an array: " + (list.size() + total));
+
+        if (list != null) list.ensureCapacity((int) (list.size() + total));
+        for (int i = 0; i < buffers.length; i ++) {
+            Buffer buffer = buffers[i];
+            // Read after the size, so it holds at least the values up to that size.
+            Segment segment = buffer.segment;
+            long taken = buffer.taken;
+            if (list != null)
+                list.addAll(segment.data, (int) (taken - segment.base), (int) (sizes[i] - taken));
+            if (drain) buffer.taken = sizes[i];
+        }
+        if (drain) prune();
+        return (int) total;
+    }
+
+    private synchronized Buffer register() {
+        Buffer buffer = new Buffer(Thread.currentThread());
+        Buffer[] newbuffers = new Buffer[buffers.length + 1];
+        System.arraycopy(buffers, 0, newbuffers, 0, buffers.length);
+        newbuffers[buffers.length] = buffer;
+        buffers = newbuffers;
+        local.set(buffer);
+        return buffer;
+    }
+
+    // Drops the buffers of threads that have ended and whose values have all been taken.
+    private void prune() {
+        Buffer[] buffers = this.buffers;
+        int n = 0;
+        for (int i = 0; i < buffers.length; i ++)
+            if (buffers[i].owner.isAlive() || buffers[i].taken != buffers[i].size) n ++;
+        if (n == buffers.length) return;
+        Buffer[] newbuffers = new Buffer[n];
+        n = 0;
+        for (int i = 0; i < buffers.length; i ++)
+            if (buffers[i].owner.isAlive() || buffers[i].taken != buffers[i].size) newbuffers[n ++] = buffers[i];
+        this.buffers = newbuffers;
+    }
+
+    // The values of a buffer from index base on, as the owning thread last published them.
+    static final class Segment {
+        final int[] data;
+        final long base;
+
+        Segment(int[] data, long base) {
+            this.data = data;
+            this.base = base;
+        }
+    }
+
+    // Written only by its owner thread, apart from taken, which only snapshots and drains
+    // write. Sizes count every value the thread has added, so they only grow. The owner
+    // allocates its buffer and segments itself, so they come from its own allocation buffer
+    // rather than sharing cache lines with another thread's.
+    static final class Buffer {
+        static final AtomicLongFieldUpdater<Buffer> SIZE = AtomicLongFieldUpdater.newUpdater(Buffer.class, "size");
+
+        final Thread owner;
+        volatile Segment segment = new Segment(new int[DEFAULT_CAPACITY], 0);
+        volatile long size;
+        volatile long taken;
+
+        Buffer(Thread owner) { this.owner = owner; }
+
+        // Copies the values not yet taken into a new segment with room for n more. The old
+        // segment is left as it was, for any snapshot still reading it.
+        Segment grow(int n) {
+            Segment old = segment;
+            long taken = this.taken, size = this.size;
+            long needed = size - taken + n;
+            if (needed > Integer.MAX_VALUE - 8) throw new OutOfMemoryError("list too large");
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(DEFAULT_CAPACITY, Math.max(needed, 2 * (size - taken))));
+            int[] data = new int[capacity];
+            System.arraycopy(old.data, (int) (taken - old.base), data, 0, (int) (size - taken));
+            segment = new Segment(data, taken);
+            return segment;
+        }
+    }
+
+    // Has each of a number of threads append values, first to a ThreadSafeIntList and then to
+    // a ConcurrentIntList, and checks that every value arrived.
+    public static class Benchmark {
+        public static void main(String[] args) throws InterruptedException {
+            int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+            final int n = args.length > 1 ? Integer.parseInt(args[1]) : 10000000 / threads;
+            for (int round = 0; round < 5; round ++) {
+                final ThreadSafeIntList locked = new ThreadSafeIntList();
+                long lockedTime = run(threads, new Producer() {
+                    public void produce(int thread) { for (int i = 0; i < n; i ++) locked.add(thread * n + i); }
+                });
+                final ConcurrentIntList buffered = new ConcurrentIntList();
+                long bufferedTime = run(threads, new Producer() {
+                    public void produce(int thread) { for (int i = 0; i < n; i ++) buffered.add(thread * n + i); }
+                });
+
+                IntList values = new IntList();
+                boolean ok = buffered.drainTo(values) == threads * n && buffered.size() == 0 &&
+                    locked.size() == threads * n;
+                values.sort();
+                for (int i = 0; ok && i < values.size(); i ++) ok = values.get(i) == i;
+                System.out.println(threads + " threads adding " + n + " ints each: ThreadSafeIntList " +
+                                   lockedTime / 1000000 + "ms, ConcurrentIntList " + bufferedTime / 1000000 + "ms" +
+                                   (ok ? "" : " MISMATCH"));
+            }
+        }
+
+        interface Producer { void produce(int thread); }
+
+        static long run(int threads, final Producer producer) throws InterruptedException {
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t ++) {
+                final int thread = t;
+                workers[t] = new Thread() {
+                    public void run() { producer.produce(thread); }
+                };
+            }
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t ++) workers[t].start();
+            for (int t = 0; t < threads; t ++) workers[t].join();
+            return System.nanoTime() - start;
+        }
+    }
+}